@@ -2,10 +2,17 @@ package game;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Scanner;
 
+import save.FormIdTable;
+import save.IntIntHashMap;
+import save.LoadOrder;
+
 public class Database {
 
   public static class ItemData {
@@ -37,24 +44,166 @@ public class Database {
 
   public static final ItemData UNKNOWN_ITEM = new ItemData(-1, "????", "UNKNOWN", -1, -1, -1);
 
-  private final Map<Integer, ItemData> items;
+  /** items.txt only has the items of the base game. */
+  private static final LoadOrder TEXT_LOAD_ORDER =
+      new LoadOrder(Collections.singletonList("Fallout3.esm"));
+
+  private final ItemDatabaseFile items;
+  /** The load order the form ids in items are in. */
+  private final LoadOrder loadOrder;
+
+  /**
+   * Plugin id -> object id -> row in items. A table per plugin, so looking
+   * up a form id in any load order is an array index and one hash lookup.
+   */
+  private final IntIntHashMap[] rowsByPluginId;
+  /**
+   * Row -> item, created on first lookup. Items are immutable, so threads
+   * that race to create one are harmless.
+   */
+  private final ItemData[] itemData;
 
-  private Database(Map<Integer, ItemData> items) {
+  private Database(ItemDatabaseFile items, LoadOrder loadOrder) {
     this.items = items;
+    this.loadOrder = loadOrder;
+
+    int[] rowCounts = new int[0];
+    for (int row = 0; row < items.size(); row++) {
+      int pluginId = loadOrder.getPluginIdByModIndex(items.getFormId(row) >>> 24);
+      if (pluginId >= rowCounts.length) {
+        rowCounts = Arrays.copyOf(rowCounts, pluginId + 1);
+      }
+      if (pluginId != -1) {
+        rowCounts[pluginId]++;
+      }
+    }
+    this.rowsByPluginId = new IntIntHashMap[rowCounts.length];
+    for (int row = 0; row < items.size(); row++) {
+      long key = loadOrder.toKey(items.getFormId(row));
+      if (key == LoadOrder.NO_KEY) {
+        continue;
+      }
+      int pluginId = LoadOrder.getKeyPluginId(key);
+      if (rowsByPluginId[pluginId] == null) {
+        rowsByPluginId[pluginId] = new IntIntHashMap(rowCounts[pluginId], -1);
+      }
+      rowsByPluginId[pluginId].put(LoadOrder.getKeyObjectId(key), row);
+    }
+    this.itemData = new ItemData[items.size()];
   }
 
-  public ItemData get(int formId) {
-    ItemData itemData = items.get(formId);
-    if (itemData == null) {
+  /**
+   * Looks up the item by its key, see {@link LoadOrder#toKey(int)}. Doesn't
+   * allocate once the item has been looked up before.
+   */
+  public ItemData get(long key) {
+    if (key == LoadOrder.NO_KEY) {
+      return UNKNOWN_ITEM;
+    }
+    int pluginId = LoadOrder.getKeyPluginId(key);
+    IntIntHashMap rows = pluginId < rowsByPluginId.length ? rowsByPluginId[pluginId] : null;
+    int row = rows == null ? -1 : rows.get(LoadOrder.getKeyObjectId(key));
+    if (row == -1) {
       return UNKNOWN_ITEM;
-    } else {
-      return itemData;
     }
+    ItemData data = itemData[row];
+    if (data == null) {
+      data = items.getItemData(row);
+      itemData[row] = data;
+    }
+    return data;
+  }
+
+  /**
+   * Looks up the item by a form id in the given load order, e.g., a save's.
+   */
+  public ItemData get(LoadOrder loadOrder, int formId) {
+    return get(loadOrder.toKey(formId));
+  }
+
+  /**
+   * Looks up the item by a form id in the load order the database was
+   * built for.
+   */
+  public ItemData get(int formId) {
+    return get(loadOrder, formId);
+  }
+
+  /**
+   * Looks up the first count form ids, in the given load order, into
+   * items, with UNKNOWN_ITEM for form ids that aren't in the database.
+   */
+  public void getAll(LoadOrder loadOrder, int[] formIds, ItemData[] items, int count) {
+    for (int i = 0; i < count; i++) {
+      items[i] = get(loadOrder.toKey(formIds[i]));
+    }
+  }
+
+  /**
+   * Resolves the first count packed form id indexes into form ids, through
+   * the save's form id table, and then into items through the save's load
+   * order.
+   */
+  public void resolve(FormIdTable formIdTable, LoadOrder loadOrder, int[] formIdIndexes,
+      int[] formIds, ItemData[] items, int count) {
+    formIdTable.findFormIdsByFormIdIndexes(formIdIndexes, formIds, count);
+    getAll(loadOrder, formIds, items, count);
+  }
+
+  /**
+   * A database of already compiled items, e.g., from the plugins of a save.
+   *
+   * @param loadOrder the load order the items' form ids are in
+   */
+  public static Database open(ItemDatabaseFile items, LoadOrder loadOrder) {
+    return new Database(items, loadOrder);
   }
 
   public static Database load() throws IOException {
-    Map<Integer, ItemData> items = new HashMap<>();
-    try (Scanner scan = new Scanner(new File("items.txt"))) {
+    return load(new File("items.txt"), new File("items.bin"));
+  }
+
+  /**
+   * Maps the compiled database, first compiling it from the text database
+   * if it's missing, older than the text, or can't be opened, e.g., because
+   * it's from an older version. If it can't be written, the compiled
+   * database is only kept in memory.
+   */
+  public static Database load(File text, File compiled) throws IOException {
+
+    if (!compiled.exists() || (text.exists() && text.lastModified() > compiled.lastModified())) {
+      return compile(text, compiled);
+    }
+
+    try {
+      return open(ItemDatabaseFile.open(compiled), TEXT_LOAD_ORDER);
+    } catch (IOException e) {
+      System.out.println("Could not open " + compiled + ", recompiling: " + e.getMessage());
+      return compile(text, compiled);
+    }
+  }
+
+  /**
+   * Compiles the text database and writes it to the compiled file,
+   * replacing it.
+   */
+  private static Database compile(File text, File compiled) throws IOException {
+    ByteBuffer bytes = ItemDatabaseFile.compile(readText(text));
+    try {
+      ItemDatabaseFile.write(bytes, compiled);
+    } catch (IOException e) {
+      System.out.println("Could not write " + compiled + ": " + e.getMessage());
+      return open(ItemDatabaseFile.wrap(bytes), TEXT_LOAD_ORDER);
+    }
+    return open(ItemDatabaseFile.open(compiled), TEXT_LOAD_ORDER);
+  }
+
+  /**
+   * Reads the tab separated text database.
+   */
+  static List<ItemData> readText(File file) throws IOException {
+    List<ItemData> items = new ArrayList<>();
+    try (Scanner scan = new Scanner(file)) {
       while (scan.hasNext()) {
         String line = scan.nextLine();
         String[] data = line.split("\t");
@@ -76,10 +225,9 @@ public class Database {
 
         int formId = Integer.parseInt(formIdStr, 16);
         
-        items.put(formId,
-            new ItemData(formId, signature, description, baseValue, weight, maxCondition));
+        items.add(new ItemData(formId, signature, description, baseValue, weight, maxCondition));
       }
     }
-    return new Database(items);
+    return items;
   }
 }
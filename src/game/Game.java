@@ -1,6 +1,12 @@
 package game;
 
 import game.Database.ItemData;
+
+import java.util.List;
+
+import save.ActorValues;
+import save.DecoderRegistry;
+import save.FormIdTable;
 import save.PlayerACHRFormChangeRecord;
 import save.PlayerNPCFormChangeRecord;
 import save.RawInventory;
@@ -12,19 +18,50 @@ public class Game {
   private static final int PLAYER_NPC_FORM_ID = 0x0000_0007;
   private static final int PLAYER_FORM_ID = 0x0000_0014;
 
+  /** Decoders for the records the game looks at. */
+  private static final DecoderRegistry DECODERS = new DecoderRegistry(64);
+
+  static {
+    DECODERS.registerFormId(
+        PLAYER_FORM_ID, "player ACHR", PlayerACHRFormChangeRecord::parseFrom);
+    DECODERS.registerFormId(
+        PLAYER_NPC_FORM_ID, "player NPC_", PlayerNPCFormChangeRecord::parseFrom);
+  }
+
   private final SaveFile save;
+  private final FormIdTable formIdTable;
   
   private final PlayerACHRFormChangeRecord playerACHRFormChangeRecord;
   private final PlayerNPCFormChangeRecord playerNPCFormChangeRecord;
 
   public Game(SaveFile save) throws LoadException {
     this.save = save;
+    this.formIdTable = save.getFormIdTable();
     
     this.playerACHRFormChangeRecord =
-        PlayerACHRFormChangeRecord.parseFrom(save.getFormChangeRecord(PLAYER_FORM_ID));
+        decode(save, PLAYER_FORM_ID, PlayerACHRFormChangeRecord.class);
 
     this.playerNPCFormChangeRecord =
-        PlayerNPCFormChangeRecord.parseFrom(save.getFormChangeRecord(PLAYER_NPC_FORM_ID));
+        decode(save, PLAYER_NPC_FORM_ID, PlayerNPCFormChangeRecord.class);
+  }
+
+  /**
+   * Decodes one record through {@link SaveFile#getFormChangeRecord(int)},
+   * which in lazy mode stops reading record headers at the record.
+   */
+  private static <T> T decode(SaveFile save, int formId, Class<T> type) throws LoadException {
+    T decoded = DECODERS.decode(save, formId, type);
+    if (decoded == null) {
+      throw new LoadException("No form change record for 0x%08X in %s", formId, save.file);
+    }
+    return decoded;
+  }
+
+  /**
+   * The decoders' counters, see {@link DecoderRegistry#getStats()}.
+   */
+  public static List<DecoderRegistry.Stats> getDecoderStats() {
+    return DECODERS.getStats();
   }
 
   public PlayerACHRFormChangeRecord getPlayerACHRFormChangeRecord() {
@@ -40,7 +77,8 @@ public class Game {
   }
 
   public Inventory getPlayerInventory(Database database) {
-    return Inventory.from(playerACHRFormChangeRecord.inventory, save.formIdTable, database);
+    return Inventory.from(
+        playerACHRFormChangeRecord.inventory, formIdTable, save.loadOrder, database);
   }
   
   public PlayerStats getPlayerStats() {
@@ -54,6 +92,15 @@ public class Game {
   public PlayerStats getPlayerPermanentStatChanges() {
     return playerACHRFormChangeRecord.permanentStatChanges;
   }
+
+  /**
+   * The changes to the player's actor values, e.g., skills and resistances.
+   * Reads the save's bytes, so it can't be used after {@link #release()}.
+   * It throws IllegalStateException if it is.
+   */
+  public ActorValues getPlayerActorValues() {
+    return playerACHRFormChangeRecord.actorValues;
+  }
   
   public int getPlayerStrength() {
     PlayerStats baseStats = getPlayerStats();
@@ -72,13 +119,28 @@ public class Game {
     return stats.strength;
   }
   
+  /**
+   * See {@link ActorValues#getCarryWeight(int)}. Reads the save's bytes, so
+   * it can't be used after {@link #release()}.
+   */
   public int getCarryWeight() {
-    return 150 + getPlayerStrength() * 10;
+    PlayerStats baseStats = getPlayerStats();
+    return getPlayerActorValues().getCarryWeight(baseStats == null ? 0 : baseStats.strength);
   }
 
   public SaveFile getSave() {
     return save;
   }
+
+  /**
+   * Gives the save's buffer back to its pool, see {@link SaveFile#release()}.
+   * The inventory from {@link #getPlayerInventory(Database)} doesn't
+   * reference the save's buffer and can still be used.
+   */
+  public void release() {
+    DECODERS.forget(save);
+    save.release();
+  }
   
   public static int calcSellValue(int baseValue, Float condition, Integer maxCondition) {
     if (condition == null || maxCondition == null) {
@@ -4,12 +4,16 @@ import game.Database.ItemData;
 import game.Inventory.ItemStack;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import save.FormIdIndex;
 import save.FormIdTable;
+import save.LoadOrder;
 import save.RawInventory;
 import save.RawInventory.RawInventoryEntry;
 import save.RawInventory.RawInventoryEntry.RawItemInfo;
@@ -42,6 +46,11 @@ public class Inventory implements Iterable<ItemStack> {
 
     // Data from the form id table
     public final int formId;
+    /**
+     * The form in a way that's the same in every save, see
+     * {@link LoadOrder#toKey(int)}. NO_KEY for forms created while playing.
+     */
+    public final long formKey;
 
     // Derived
     public final int sellValue; 
@@ -50,7 +59,7 @@ public class Inventory implements Iterable<ItemStack> {
     
     private ItemStack(int inventoryIndex, FormIdIndex formIdIndex, int count, Float condition,
         boolean equipped, Integer hotkey, FormIdIndex ownerFormIdIndex,
-        FormIdIndex scriptFormIdIndex, ItemData itemData, int formId) {
+        FormIdIndex scriptFormIdIndex, ItemData itemData, int formId, long formKey) {
 
       // From inventory
       this.inventoryIndex = inventoryIndex;
@@ -71,6 +80,7 @@ public class Inventory implements Iterable<ItemStack> {
 
       // From id table
       this.formId = formId;
+      this.formKey = formKey;
 
       // Derived
       this.sellValue = Game.calcSellValue(itemData, condition);
@@ -94,10 +104,128 @@ public class Inventory implements Iterable<ItemStack> {
     }
   }
 
+  /** Caps are counted by the inventory's sell value totals. */
+  public static final int BOTTLE_CAPS_FORM_ID = 0xF;
+
+  /**
+   * How many of each stack of an inventory to drop, with the totals of the
+   * drops kept up to date as the counts change. Stacks are numbered as in
+   * {@link Inventory#getInventory()}.
+   */
+  public static class Drops {
+
+    private final Inventory inventory;
+    private final int[] dropCounts;
+
+    private int count;
+    private double weight;
+    private int sellValue;
+
+    private Drops(Inventory inventory) {
+      this.inventory = inventory;
+      this.dropCounts = new int[inventory.inventory.size()];
+    }
+
+    public int getDropCount(int stack) {
+      return dropCounts[stack];
+    }
+
+    /**
+     * Sets how many of the stack to drop, clamped to the stack's count.
+     */
+    public void setDropCount(int stack, int dropCount) {
+      ItemStack itemStack = inventory.inventory.get(stack);
+      dropCount = Math.max(0, Math.min(dropCount, itemStack.count));
+      int delta = dropCount - dropCounts[stack];
+      dropCounts[stack] = dropCount;
+
+      count += delta;
+      weight += delta * (double) itemStack.weight;
+      if (itemStack.formId != BOTTLE_CAPS_FORM_ID) {
+        sellValue += delta * itemStack.sellValue;
+      }
+    }
+
+    public void clear() {
+      Arrays.fill(dropCounts, 0);
+      count = 0;
+      weight = 0;
+      sellValue = 0;
+    }
+
+    /** The number of items to drop. */
+    public int getCount() {
+      return count;
+    }
+
+    public float getWeight() {
+      return (float) weight;
+    }
+
+    /** The sell value of the items to drop, not counting caps. */
+    public int getSellValue() {
+      return sellValue;
+    }
+
+    /** The inventory's weight once the items are dropped. */
+    public float getRemainingWeight() {
+      return (float) (inventory.totalWeight - weight);
+    }
+  }
+
   private final List<ItemStack> inventory;
 
+  // Totals, computed once since the stacks don't change.
+  private final int totalCount;
+  private final float totalWeight;
+  private final int totalSellValue;
+  private final Map<String, Float> weightByType;
+  private final Map<String, Integer> sellValueByType;
+  private final Map<Integer, Float> weightByFormId;
+  private final Map<Integer, Integer> sellValueByFormId;
+  private final Map<Integer, Integer> sellValueOfWeightedByFormId;
+
   private Inventory(List<ItemStack> inventory) {
     this.inventory = inventory;
+
+    int totalCount = 0;
+    double totalWeight = 0;
+    int totalSellValue = 0;
+    Map<String, Float> weightByType = new HashMap<>();
+    Map<String, Integer> sellValueByType = new HashMap<>();
+    Map<Integer, Float> weightByFormId = new HashMap<>();
+    Map<Integer, Integer> sellValueByFormId = new HashMap<>();
+    Map<Integer, Integer> sellValueOfWeightedByFormId = new HashMap<>();
+
+    for (ItemStack stack : inventory) {
+      float weight = stack.count * stack.weight;
+      int sellValue = stack.formId == BOTTLE_CAPS_FORM_ID ? 0 : stack.count * stack.sellValue;
+
+      totalCount += stack.count;
+      totalWeight += weight;
+      totalSellValue += sellValue;
+      weightByType.merge(stack.type, weight, Float::sum);
+      sellValueByType.merge(stack.type, sellValue, Integer::sum);
+
+      if (stack.weight > 0) {
+        weightByFormId.merge(stack.formId, weight, Float::sum);
+      }
+      if (sellValue > 0) {
+        sellValueByFormId.merge(stack.formId, sellValue, Integer::sum);
+        if (stack.weight > 0) {
+          sellValueOfWeightedByFormId.merge(stack.formId, sellValue, Integer::sum);
+        }
+      }
+    }
+
+    this.totalCount = totalCount;
+    this.totalWeight = (float) totalWeight;
+    this.totalSellValue = totalSellValue;
+    this.weightByType = Collections.unmodifiableMap(weightByType);
+    this.sellValueByType = Collections.unmodifiableMap(sellValueByType);
+    this.weightByFormId = Collections.unmodifiableMap(weightByFormId);
+    this.sellValueByFormId = Collections.unmodifiableMap(sellValueByFormId);
+    this.sellValueOfWeightedByFormId = Collections.unmodifiableMap(sellValueOfWeightedByFormId);
   }
 
   @Override
@@ -109,23 +237,71 @@ public class Inventory implements Iterable<ItemStack> {
     return inventory;
   }
 
+  /**
+   * A new, empty set of drops from this inventory.
+   */
+  public Drops newDrops() {
+    return new Drops(this);
+  }
+
+  /** The number of items, i.e., the sum of the stack counts. */
+  public int getTotalCount() {
+    return totalCount;
+  }
+
   public float getTotalWeight() {
-    float totalWeight = 0;
-    for (ItemStack entry : this) {
-      totalWeight += entry.weight * entry.count;
-    }
     return totalWeight;
   }
 
-  public static Inventory from(
-      RawInventory rawInventory, FormIdTable formIdTable, Database database) {
+  /** The sell value of everything but the caps. */
+  public int getTotalSellValue() {
+    return totalSellValue;
+  }
+
+  /** Type (e.g., WEAP) -> total weight */
+  public Map<String, Float> getWeightByType() {
+    return weightByType;
+  }
+
+  /** Type (e.g., WEAP) -> total sell value, not counting caps */
+  public Map<String, Integer> getSellValueByType() {
+    return sellValueByType;
+  }
+
+  /** Form id -> total weight, for the items that weigh something */
+  public Map<Integer, Float> getWeightByFormId() {
+    return weightByFormId;
+  }
+
+  /** Form id -> total sell value, for the items worth something, not counting caps */
+  public Map<Integer, Integer> getSellValueByFormId() {
+    return sellValueByFormId;
+  }
+
+  /** Like {@link #getSellValueByFormId()}, for the items that weigh something */
+  public Map<Integer, Integer> getSellValueOfWeightedByFormId() {
+    return sellValueOfWeightedByFormId;
+  }
+
+  public static Inventory from(RawInventory rawInventory, FormIdTable formIdTable,
+      LoadOrder loadOrder, Database database) {
     
     List<ItemStack> entries = new ArrayList<ItemStack>();
-    
-    for (RawInventoryEntry entry : rawInventory) {
 
-      int formId = formIdTable.findFormIdByFormIdIndex(entry.formIdIndex);
-      ItemData itemData = database.get(formId);
+    List<RawInventoryEntry> rawEntries = rawInventory.getEntries();
+    int count = rawEntries.size();
+    int[] formIds = new int[count];
+    ItemData[] items = new ItemData[count];
+    database.resolve(formIdTable, loadOrder,
+        rawInventory.getPackedFormIdIndexes(), formIds, items, count);
+
+    for (int e = 0; e < count; e++) {
+
+      RawInventoryEntry entry = rawEntries.get(e);
+      int formId = formIds[e];
+      long formKey = loadOrder.toKey(formId);
+      ItemData itemData = items[e];
+      FormIdIndex formIdIndex = entry.getFormIdIndex();
       
       int stackedItemsWithInfo = entry.itemInfos.stream()
           .mapToInt(i -> i.getCount()).sum();
@@ -135,7 +311,7 @@ public class Inventory implements Iterable<ItemStack> {
       if (itemsWithNoExtraInfo > 0) {
         entries.add(new ItemStack(
             entry.inventoryIndex,
-            entry.formIdIndex,
+            formIdIndex,
             itemsWithNoExtraInfo,
             itemData.maxCondition == null ? null : itemData.maxCondition.floatValue(),
             false,
@@ -143,13 +319,14 @@ public class Inventory implements Iterable<ItemStack> {
             null,
             null,
             itemData,
-            formId));
+            formId,
+            formKey));
       }
 
       for (RawItemInfo itemInfo : entry.itemInfos) {
         entries.add(new ItemStack(
             entry.inventoryIndex,
-            entry.formIdIndex,
+            formIdIndex,
             itemInfo.getCount(),
             itemInfo.getCondition(),
             itemInfo.getEquipped(),
@@ -157,7 +334,8 @@ public class Inventory implements Iterable<ItemStack> {
             itemInfo.getOwnerFormIdIndex(),
             itemInfo.getScriptFormIdIndex(),
             itemData,
-            formId));
+            formId,
+            formKey));
       }
     }
     
@@ -0,0 +1,272 @@
+package game;
+
+import game.Database.ItemData;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The item database in a compact binary form (items.bin), which is opened by
+ * memory mapping it rather than parsing it.
+ *
+ * The file is little-endian:
+ *
+ * <pre>
+ * int magic, version, count, string pool size
+ * int[count] form ids, sorted
+ * int[count] base values
+ * float[count] weights
+ * int[count] max conditions, -1 for none
+ * int[count] signature offsets into the string pool
+ * int[count] description offsets into the string pool
+ * string pool: for each string, a 2 byte length and the UTF-8 bytes
+ * </pre>
+ */
+public class ItemDatabaseFile {
+
+  private static final int MAGIC = 0x54493346; // "F3IT"
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 4 * 4;
+  private static final int COLUMNS = 6;
+
+  private final ByteBuffer data;
+  private final int count;
+  private final IntBuffer formIds;
+  private final int baseValuesPosition;
+  private final int weightsPosition;
+  private final int maxConditionsPosition;
+  private final int signaturesPosition;
+  private final int descriptionsPosition;
+  private final int stringPoolPosition;
+
+  private ItemDatabaseFile(ByteBuffer data) throws IOException {
+    this.data = data.order(ByteOrder.LITTLE_ENDIAN);
+
+    if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+      throw new IOException("Not an item database, or an old version");
+    }
+    this.count = data.getInt(8);
+    int stringPoolSize = data.getInt(12);
+    if (count < 0 || stringPoolSize < 0
+        || HEADER_SIZE + (long) count * 4 * COLUMNS + stringPoolSize != data.limit()) {
+      throw new IOException("Item database is truncated or corrupt");
+    }
+
+    int column = count * 4;
+    ByteBuffer formIdBytes = data.duplicate();
+    formIdBytes.position(HEADER_SIZE).limit(HEADER_SIZE + column);
+    this.formIds = formIdBytes.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    this.baseValuesPosition = HEADER_SIZE + column;
+    this.weightsPosition = baseValuesPosition + column;
+    this.maxConditionsPosition = weightsPosition + column;
+    this.signaturesPosition = maxConditionsPosition + column;
+    this.descriptionsPosition = signaturesPosition + column;
+    this.stringPoolPosition = descriptionsPosition + column;
+
+    // Checked once here, so that reading a row can't fail later.
+    for (int row = 0; row < count; row++) {
+      if (row > 0 && getFormId(row - 1) >= getFormId(row)) {
+        throw new IOException("Item database isn't sorted by form id at row " + row);
+      }
+      checkString(data.getInt(signaturesPosition + row * 4), stringPoolSize, row);
+      checkString(data.getInt(descriptionsPosition + row * 4), stringPoolSize, row);
+    }
+  }
+
+  private void checkString(int offset, int stringPoolSize, int row) throws IOException {
+    if (offset < 0 || (long) offset + 2 > stringPoolSize
+        || (long) offset + 2 + (data.getShort(stringPoolPosition + offset) & 0xFFFF)
+            > stringPoolSize) {
+      throw new IOException("Item database has a bad string at row " + row);
+    }
+  }
+
+  /**
+   * Maps a compiled item database.
+   */
+  public static ItemDatabaseFile open(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      return new ItemDatabaseFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Wraps a compiled item database that's already in memory, e.g., from
+   * {@link #compile(List)}.
+   */
+  public static ItemDatabaseFile wrap(ByteBuffer data) throws IOException {
+    return new ItemDatabaseFile(data);
+  }
+
+  public int size() {
+    return count;
+  }
+
+  /**
+   * The row of the given form id, or -1.
+   */
+  public int find(int formId) {
+    IntBuffer formIds = this.formIds;
+    int low = 0;
+    int high = count - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int value = formIds.get(middle);
+      if (value < formId) {
+        low = middle + 1;
+      } else if (value > formId) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  public int getFormId(int row) {
+    return formIds.get(row);
+  }
+
+  public int getBaseValue(int row) {
+    return data.getInt(baseValuesPosition + row * 4);
+  }
+
+  public float getWeight(int row) {
+    return data.getFloat(weightsPosition + row * 4);
+  }
+
+  /** The max condition, or -1 if the item has no condition. */
+  public int getMaxCondition(int row) {
+    return data.getInt(maxConditionsPosition + row * 4);
+  }
+
+  public String getSignature(int row) {
+    return getString(data.getInt(signaturesPosition + row * 4));
+  }
+
+  public String getDescription(int row) {
+    return getString(data.getInt(descriptionsPosition + row * 4));
+  }
+
+  private String getString(int offset) {
+    int position = stringPoolPosition + offset;
+    int length = data.getShort(position) & 0xFFFF;
+    byte[] bytes = new byte[length];
+    ByteBuffer string = data.duplicate();
+    string.position(position + 2);
+    string.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * A new ItemData for the given row.
+   */
+  public ItemData getItemData(int row) {
+    int maxCondition = getMaxCondition(row);
+    return new ItemData(
+        getFormId(row),
+        getSignature(row),
+        getDescription(row),
+        getBaseValue(row),
+        getWeight(row),
+        maxCondition < 0 ? null : maxCondition);
+  }
+
+  /**
+   * Compiles the items into the binary format. If a form id appears more
+   * than once, the last item for it wins.
+   */
+  public static ByteBuffer compile(List<ItemData> items) {
+
+    Map<Integer, ItemData> byFormId = new HashMap<>();
+    for (ItemData item : items) {
+      byFormId.put(item.formId, item);
+    }
+    int[] formIds = new int[byFormId.size()];
+    int n = 0;
+    for (int formId : byFormId.keySet()) {
+      formIds[n++] = formId;
+    }
+    Arrays.sort(formIds);
+
+    // Signatures repeat a lot, so each distinct string is pooled once.
+    Map<String, Integer> offsets = new HashMap<>();
+    List<byte[]> pool = new ArrayList<>();
+    int[] poolSize = new int[1];
+
+    int count = formIds.length;
+    ByteBuffer columns = ByteBuffer.allocate(count * 4 * COLUMNS).order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i < count; i++) {
+      columns.putInt(i * 4, formIds[i]);
+    }
+    for (int i = 0; i < count; i++) {
+      ItemData item = byFormId.get(formIds[i]);
+      int column = count * 4;
+      columns.putInt(column + i * 4, item.baseValue);
+      columns.putFloat(2 * column + i * 4, item.weight);
+      columns.putInt(3 * column + i * 4, item.maxCondition == null ? -1 : item.maxCondition);
+      columns.putInt(4 * column + i * 4, pool(item.signature, offsets, pool, poolSize));
+      columns.putInt(5 * column + i * 4, pool(item.description, offsets, pool, poolSize));
+    }
+
+    ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE + columns.capacity() + poolSize[0])
+        .order(ByteOrder.LITTLE_ENDIAN);
+    data.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(poolSize[0]);
+    data.put(columns.array());
+    for (byte[] string : pool) {
+      data.putShort((short) string.length).put(string);
+    }
+    data.flip();
+    return data;
+  }
+
+  private static int pool(String s, Map<String, Integer> offsets, List<byte[]> pool,
+      int[] poolSize) {
+    Integer offset = offsets.get(s);
+    if (offset == null) {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      if (bytes.length > 0xFFFF) {
+        bytes = Arrays.copyOf(bytes, 0xFFFF);
+      }
+      offset = poolSize[0];
+      offsets.put(s, offset);
+      pool.add(bytes);
+      poolSize[0] += 2 + bytes.length;
+    }
+    return offset;
+  }
+
+  /**
+   * Writes the compiled items to the file, replacing it.
+   */
+  public static void write(ByteBuffer compiled, File file) throws IOException {
+    Path path = file.toPath();
+    Path temp = path.resolveSibling(file.getName() + ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+        ByteBuffer bytes = compiled.duplicate();
+        while (bytes.hasRemaining()) {
+          channel.write(bytes);
+        }
+      }
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+}
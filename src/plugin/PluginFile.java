@@ -0,0 +1,368 @@
+package plugin;
+
+import game.Database.ItemData;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import save.Fo3Strings;
+
+/**
+ * A memory mapped Fallout 3 plugin (.esm or .esp). Opening a plugin only
+ * reads its header; {@link #indexItems()} walks the group headers to find
+ * the item records without decoding them, and {@link #readItem(int)}
+ * decodes (and if needed decompresses) one record.
+ *
+ * See http://www.uesp.net/wiki/Tes5Mod:Mod_File_Format, which FO3 shares
+ * apart from the details of the records.
+ */
+public class PluginFile {
+
+  /** The record types that are items, i.e., can be in an inventory. */
+  static final List<String> ITEM_TYPES = Collections.unmodifiableList(
+      Arrays.asList("WEAP", "ARMO", "ALCH", "MISC", "AMMO", "KEYM"));
+
+  /** Record and group headers are the same size in FO3. */
+  private static final int HEADER_SIZE = 24;
+
+  private static final int FLAG_DELETED = 0x0000_0020;
+  private static final int FLAG_COMPRESSED = 0x0004_0000;
+
+  private final File file;
+  private final ByteBuffer data;
+  private final List<String> masters;
+  /** Where the first top level group starts. */
+  private final int groupsStart;
+
+  private PluginFile(File file, ByteBuffer data) throws IOException {
+    this.file = file;
+    this.data = data.order(ByteOrder.LITTLE_ENDIAN);
+
+    if (data.limit() < HEADER_SIZE || !type(0).equals("TES4")) {
+      throw new IOException(file + " is not a plugin");
+    }
+    int headerDataSize = data.getInt(4);
+    this.groupsStart = checkedEnd(0, HEADER_SIZE + (long) headerDataSize);
+
+    List<String> masters = new ArrayList<>();
+    forEachSubrecord(slice(HEADER_SIZE, headerDataSize), (type, subrecord) -> {
+      if (type.equals("MAST")) {
+        masters.add(zstring(subrecord));
+      }
+    });
+    this.masters = Collections.unmodifiableList(masters);
+  }
+
+  /**
+   * Maps the plugin and reads its header.
+   */
+  public static PluginFile open(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException(file + " is too large");
+      }
+      return new PluginFile(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * The plugins this one depends on. The top byte of a form id in this
+   * plugin is an index into this list, or the size of the list for the
+   * plugin's own forms.
+   */
+  public List<String> getMasters() {
+    return masters;
+  }
+
+  /**
+   * Finds the item records by walking only the group and record headers.
+   *
+   * @return the offsets of the item records, in file order
+   */
+  public int[] indexItems() throws IOException {
+    int[] offsets = new int[256];
+    int count = 0;
+
+    int position = groupsStart;
+    while (position < data.limit()) {
+      checkedEnd(position, HEADER_SIZE);
+      if (!type(position).equals("GRUP")) {
+        throw new IOException(String.format(
+            "Expected a group in %s at 0x%08X, got %s", file, position, type(position)));
+      }
+      int groupEnd = checkedEnd(position, data.getInt(position + 4) & 0xFFFF_FFFFL);
+
+      // Top level groups are labeled with the type of the records in them.
+      if (ITEM_TYPES.contains(type(position + 8))) {
+        int record = position + HEADER_SIZE;
+        while (record < groupEnd) {
+          checkedEnd(record, HEADER_SIZE);
+          if (type(record).equals("GRUP")) {
+            // Item groups don't have sub groups, but skip any anyway.
+            record = checkedEnd(record, data.getInt(record + 4) & 0xFFFF_FFFFL);
+            continue;
+          }
+          if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+          }
+          offsets[count++] = record;
+          record = checkedEnd(record, HEADER_SIZE + (data.getInt(record + 4) & 0xFFFF_FFFFL));
+        }
+      }
+      position = groupEnd;
+    }
+    return Arrays.copyOf(offsets, count);
+  }
+
+  /**
+   * Decodes the item record at the given offset, from {@link #indexItems()}.
+   * The form id is the plugin's own, i.e., relative to {@link #getMasters()}.
+   *
+   * @return the item, or null if the record is deleted or has no data
+   */
+  public ItemData readItem(int offset) throws IOException {
+
+    String type = type(offset);
+    int dataSize = data.getInt(offset + 4);
+    int flags = data.getInt(offset + 8);
+    int formId = data.getInt(offset + 12);
+
+    if ((flags & FLAG_DELETED) != 0) {
+      return null;
+    }
+
+    ByteBuffer recordData = slice(offset + HEADER_SIZE, dataSize);
+    if ((flags & FLAG_COMPRESSED) != 0) {
+      recordData = decompress(recordData, offset);
+    }
+
+    ItemFields fields = new ItemFields();
+    forEachSubrecord(recordData, (subrecordType, subrecord) -> {
+      switch (subrecordType) {
+      case "FULL":
+        fields.name = zstring(subrecord);
+        break;
+      case "DATA":
+        fields.data = subrecord;
+        break;
+      case "ENIT":
+        fields.enit = subrecord;
+        break;
+      }
+    });
+
+    return fields.toItemData(type, formId);
+  }
+
+  /** The subrecords an item is made from. */
+  private static class ItemFields {
+
+    String name;
+    ByteBuffer data;
+    ByteBuffer enit;
+
+    ItemData toItemData(String type, int formId) {
+
+      int value;
+      float weight;
+      Integer maxCondition = null;
+
+      switch (type) {
+
+      case "WEAP":
+        // value, health, weight, damage, clip size
+        if (!hasBytes(data, 12)) {
+          return null;
+        }
+        value = data.getInt(0);
+        maxCondition = data.getInt(4);
+        weight = data.getFloat(8);
+        break;
+
+      case "ARMO":
+        // value, health, weight
+        if (!hasBytes(data, 12)) {
+          return null;
+        }
+        value = data.getInt(0);
+        maxCondition = data.getInt(4);
+        weight = data.getFloat(8);
+        break;
+
+      case "ALCH":
+        // DATA is only the weight, the value is the first field of ENIT.
+        if (!hasBytes(data, 4) || !hasBytes(enit, 4)) {
+          return null;
+        }
+        weight = data.getFloat(0);
+        value = enit.getInt(0);
+        break;
+
+      case "AMMO":
+        // speed, flags and 3 unused bytes, value, clip rounds. Ammo has no weight.
+        if (!hasBytes(data, 12)) {
+          return null;
+        }
+        value = data.getInt(8);
+        weight = 0;
+        break;
+
+      case "MISC":
+      case "KEYM":
+        // value, weight
+        if (!hasBytes(data, 8)) {
+          return null;
+        }
+        value = data.getInt(0);
+        weight = data.getFloat(4);
+        break;
+
+      default:
+        return null;
+      }
+
+      if (maxCondition != null && maxCondition <= 0) {
+        maxCondition = null;
+      }
+
+      return new ItemData(formId, type, name == null ? "" : name, value, weight, maxCondition);
+    }
+
+    private static boolean hasBytes(ByteBuffer subrecord, int size) {
+      return subrecord != null && subrecord.limit() >= size;
+    }
+  }
+
+  private interface SubrecordVisitor {
+    void visit(String type, ByteBuffer data) throws IOException;
+  }
+
+  /**
+   * Calls the visitor with each subrecord of the record data. The data
+   * passed to the visitor is little-endian and starts at position 0.
+   */
+  private void forEachSubrecord(ByteBuffer recordData, SubrecordVisitor visitor)
+      throws IOException {
+    int position = 0;
+    // An XXXX subrecord holds the size of the next subrecord when it's too
+    // large for the 2 byte size.
+    int nextSize = -1;
+    while (position + 6 <= recordData.limit()) {
+      String type = type(recordData, position);
+      int size = nextSize >= 0 ? nextSize : recordData.getShort(position + 4) & 0xFFFF;
+      nextSize = -1;
+      int start = position + 6;
+      if (start + (long) size > recordData.limit()) {
+        throw new IOException(String.format("Subrecord %s in %s runs past its record", type, file));
+      }
+      if (type.equals("XXXX")) {
+        nextSize = recordData.getInt(start);
+      } else {
+        ByteBuffer subrecord = recordData.duplicate();
+        subrecord.position(start).limit(start + size);
+        visitor.visit(type, subrecord.slice().order(ByteOrder.LITTLE_ENDIAN));
+      }
+      position = start + size;
+    }
+  }
+
+  private ByteBuffer decompress(ByteBuffer compressed, int offset) throws IOException {
+    if (compressed.limit() < 4) {
+      throw new IOException(String.format("Compressed record in %s at 0x%08X is empty", file, offset));
+    }
+    int size = compressed.getInt(0);
+    if (size < 0 || size > 64 * 1024 * 1024) {
+      throw new IOException(String.format(
+          "Compressed record in %s at 0x%08X has a bad size: %d", file, offset, size));
+    }
+    ByteBuffer input = compressed.duplicate();
+    input.position(4);
+    byte[] in = new byte[input.remaining()];
+    input.get(in);
+
+    byte[] out = new byte[size];
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(in);
+      int n = 0;
+      while (n < size && !inflater.finished()) {
+        int inflated = inflater.inflate(out, n, size - n);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        n += inflated;
+      }
+      if (n != size) {
+        throw new IOException(String.format(
+            "Compressed record in %s at 0x%08X is %d bytes, expected %d", file, offset, n, size));
+      }
+    } catch (DataFormatException e) {
+      throw new IOException(
+          String.format("Bad compressed record in %s at 0x%08X", file, offset), e);
+    } finally {
+      inflater.end();
+    }
+    return ByteBuffer.wrap(out).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private ByteBuffer slice(int position, int size) throws IOException {
+    checkedEnd(position, size & 0xFFFF_FFFFL);
+    ByteBuffer slice = data.duplicate();
+    slice.position(position).limit(position + size);
+    return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * position + size, checked against the end of the file.
+   */
+  private int checkedEnd(int position, long size) throws IOException {
+    long end = position + size;
+    if (size < 0 || end > data.limit()) {
+      throw new IOException(String.format(
+          "%s is cut off: 0x%X bytes at 0x%08X run past the end", file, size, position));
+    }
+    return (int) end;
+  }
+
+  private String type(int position) {
+    return type(data, position);
+  }
+
+  private static String type(ByteBuffer data, int position) {
+    char[] type = new char[4];
+    for (int i = 0; i < 4; i++) {
+      type[i] = (char) (data.get(position + i) & 0xFF);
+    }
+    return new String(type);
+  }
+
+  /** A null terminated string that fills the subrecord. */
+  private static String zstring(ByteBuffer subrecord) {
+    int length = subrecord.limit();
+    while (length > 0 && subrecord.get(length - 1) == 0) {
+      length--;
+    }
+    byte[] bytes = new byte[length];
+    subrecord.duplicate().get(bytes);
+    return new String(bytes, Fo3Strings.CHARSET);
+  }
+
+  @Override
+  public String toString() {
+    return file.getName();
+  }
+}
@@ -0,0 +1,220 @@
+package plugin;
+
+import game.Database.ItemData;
+import game.ItemDatabaseFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * Builds the item database from the plugins of a save's load order, rather
+ * than from the items.txt that ships with the analyzer, so items from mods
+ * and DLC have names, values and weights.
+ *
+ * Reading the plugins only touches the group headers and the item records;
+ * the records are decoded, and decompressed, in parallel. The result is
+ * cached in the items.bin format, keyed by the load order and the plugins'
+ * sizes and modification times, so it's only rebuilt when they change. The
+ * caches of the few most recently used load orders are kept.
+ */
+public class PluginItems {
+
+  /** Bump when the way items are read from plugins changes. */
+  private static final int CACHE_VERSION = 1;
+
+  /** How many load orders' caches to keep. */
+  private static final int MAX_CACHE_FILES = 4;
+
+  private static final String CACHE_PREFIX = "plugin-items-";
+  private static final String CACHE_SUFFIX = ".bin";
+
+  /**
+   * Maps the cached database for the load order, building it from the
+   * plugins in the data directory if it's missing or out of date. If the
+   * cache can't be written, the database is only kept in memory.
+   *
+   * @param loadOrder plugin file names, e.g., {@link save.SaveFile#plugins}
+   */
+  public static ItemDatabaseFile load(File dataDirectory, List<String> loadOrder,
+      File cacheDirectory) throws IOException {
+
+    File cache = new File(cacheDirectory,
+        CACHE_PREFIX + cacheKey(dataDirectory, loadOrder) + CACHE_SUFFIX);
+    if (cache.exists()) {
+      try {
+        ItemDatabaseFile items = ItemDatabaseFile.open(cache);
+        // The modification time is when it was last used.
+        cache.setLastModified(System.currentTimeMillis());
+        return items;
+      } catch (IOException e) {
+        System.out.println("Could not open " + cache + ", rebuilding: " + e.getMessage());
+      }
+    }
+
+    ByteBuffer bytes = ItemDatabaseFile.compile(read(dataDirectory, loadOrder));
+    try {
+      ItemDatabaseFile.write(bytes, cache);
+    } catch (IOException e) {
+      System.out.println("Could not write " + cache + ": " + e.getMessage());
+      return ItemDatabaseFile.wrap(bytes);
+    }
+    deleteOldCaches(cacheDirectory);
+    return ItemDatabaseFile.open(cache);
+  }
+
+  /**
+   * Deletes all but the most recently used caches, e.g., those of load
+   * orders from before a plugin was updated. Caches that are still mapped
+   * can't be deleted on Windows, and are left for next time.
+   */
+  private static void deleteOldCaches(File cacheDirectory) {
+    File[] caches = cacheDirectory.listFiles(
+        (directory, name) -> name.startsWith(CACHE_PREFIX) && name.endsWith(CACHE_SUFFIX));
+    if (caches == null || caches.length <= MAX_CACHE_FILES) {
+      return;
+    }
+    Arrays.sort(caches, Comparator.comparingLong(File::lastModified).reversed());
+    for (int i = MAX_CACHE_FILES; i < caches.length; i++) {
+      if (!caches[i].delete()) {
+        System.out.println("Could not delete old " + caches[i]);
+      }
+    }
+  }
+
+  /**
+   * Reads the items of the plugins in the load order. Form ids are
+   * rewritten to the load order, i.e., their top byte is the index of the
+   * plugin in it. Items are in load order, so later plugins override earlier
+   * ones when compiled.
+   *
+   * Plugins that aren't in the data directory are skipped.
+   */
+  public static List<ItemData> read(File dataDirectory, List<String> loadOrder)
+      throws IOException {
+
+    List<PluginFile> plugins = new ArrayList<>();
+    List<int[]> remaps = new ArrayList<>();
+    List<int[]> offsets = new ArrayList<>();
+
+    for (int i = 0; i < loadOrder.size(); i++) {
+      File file = new File(dataDirectory, loadOrder.get(i));
+      if (!file.isFile()) {
+        System.out.println("Plugin not found, skipping its items: " + file);
+        continue;
+      }
+      PluginFile plugin = PluginFile.open(file);
+      plugins.add(plugin);
+      remaps.add(remap(plugin, i, loadOrder));
+      offsets.add(plugin.indexItems());
+    }
+
+    // Flattened (plugin, record) pairs, so the records of all the plugins
+    // are decoded in one parallel pass.
+    int total = 0;
+    for (int[] o : offsets) {
+      total += o.length;
+    }
+    int[] recordPlugins = new int[total];
+    int[] recordOffsets = new int[total];
+    int n = 0;
+    for (int p = 0; p < offsets.size(); p++) {
+      for (int offset : offsets.get(p)) {
+        recordPlugins[n] = p;
+        recordOffsets[n] = offset;
+        n++;
+      }
+    }
+
+    ItemData[] decoded = new ItemData[total];
+    try {
+      IntStream.range(0, total).parallel().forEach(r -> {
+        try {
+          decoded[r] = plugins.get(recordPlugins[r]).readItem(recordOffsets[r]);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    List<ItemData> items = new ArrayList<>(total);
+    for (int r = 0; r < total; r++) {
+      ItemData item = decoded[r];
+      if (item == null) {
+        continue;
+      }
+      int[] remap = remaps.get(recordPlugins[r]);
+      int modIndex = Math.min(item.formId >>> 24, remap.length - 1);
+      if (remap[modIndex] == -1) {
+        // From a master that isn't loaded.
+        continue;
+      }
+      int formId = (remap[modIndex] << 24) | (item.formId & 0x00FF_FFFF);
+      items.add(new ItemData(formId, item.signature, item.description, item.baseValue,
+          item.weight, item.maxCondition));
+    }
+    return items;
+  }
+
+  /**
+   * Plugin mod index -> load order index, or -1 if the master isn't in the
+   * load order. The last element is the plugin itself, which the game also
+   * uses for any mod index past the masters.
+   */
+  private static int[] remap(PluginFile plugin, int loadOrderIndex, List<String> loadOrder) {
+    List<String> masters = plugin.getMasters();
+    int[] remap = new int[masters.size() + 1];
+    for (int m = 0; m < masters.size(); m++) {
+      remap[m] = -1;
+      for (int i = 0; i < loadOrder.size(); i++) {
+        if (loadOrder.get(i).equalsIgnoreCase(masters.get(m))) {
+          remap[m] = i;
+          break;
+        }
+      }
+    }
+    remap[masters.size()] = loadOrderIndex;
+    return remap;
+  }
+
+  /**
+   * A hash of the load order and the size and modification time of each
+   * plugin in it.
+   */
+  private static String cacheKey(File dataDirectory, List<String> loadOrder) {
+    StringBuilder key = new StringBuilder();
+    key.append(CACHE_VERSION).append('\n');
+    for (String plugin : loadOrder) {
+      File file = new File(dataDirectory, plugin);
+      key.append(plugin.toLowerCase(Locale.ROOT)).append('\t')
+          .append(file.length()).append('\t')
+          .append(file.lastModified()).append('\n');
+    }
+
+    byte[] hash;
+    try {
+      hash = MessageDigest.getInstance("SHA-1")
+          .digest(key.toString().getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform has SHA-1.
+      throw new IllegalStateException(e);
+    }
+    StringBuilder hex = new StringBuilder();
+    for (int i = 0; i < 8; i++) {
+      hex.append(String.format("%02x", hash[i]));
+    }
+    return hex.toString();
+  }
+}
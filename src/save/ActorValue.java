@@ -0,0 +1,123 @@
+package save;
+
+/**
+ * The FO3 actor values, in the order of their codes, which is also their
+ * order in each block of {@link ActorValues}.
+ *
+ * See http://geck.bethsoft.com/index.php/Actor_Value_Codes
+ */
+public enum ActorValue {
+
+  AGGRESSION,
+  CONFIDENCE,
+  ENERGY,
+  RESPONSIBILITY,
+  MOOD,
+  STRENGTH,
+  PERCEPTION,
+  ENDURANCE,
+  CHARISMA,
+  INTELLIGENCE,
+  AGILITY,
+  LUCK,
+  ACTION_POINTS,
+  CARRY_WEIGHT,
+  CRIT_CHANCE,
+  HEAL_RATE,
+  HEALTH,
+  MELEE_DAMAGE,
+  DAMAGE_RESIST,
+  POISON_RESIST,
+  RAD_RESIST,
+  SPEED_MULT,
+  FATIGUE,
+  KARMA,
+  XP,
+  PERCEPTION_CONDITION,
+  ENDURANCE_CONDITION,
+  LEFT_ATTACK_CONDITION,
+  RIGHT_ATTACK_CONDITION,
+  LEFT_MOBILITY_CONDITION,
+  RIGHT_MOBILITY_CONDITION,
+  BRAIN_CONDITION,
+  BARTER,
+  BIG_GUNS,
+  ENERGY_WEAPONS,
+  EXPLOSIVES,
+  LOCKPICK,
+  MEDICINE,
+  MELEE_WEAPONS,
+  REPAIR,
+  SCIENCE,
+  SMALL_GUNS,
+  SNEAK,
+  SPEECH,
+  THROWING,
+  UNARMED,
+  INVENTORY_WEIGHT,
+  PARALYSIS,
+  INVISIBILITY,
+  CHAMELEON,
+  NIGHT_EYE,
+  DETECT_LIFE_RANGE,
+  FIRE_RESIST,
+  WATER_BREATHING,
+  RADIATION_RADS,
+  BLOODY_MESS,
+  UNARMED_DAMAGE,
+  ASSISTANCE,
+  ELECTRIC_RESIST,
+  FROST_RESIST,
+  ENERGY_RESIST,
+  EMP_RESIST,
+  VARIABLE01,
+  VARIABLE02,
+  VARIABLE03,
+  VARIABLE04,
+  VARIABLE05,
+  VARIABLE06,
+  VARIABLE07,
+  VARIABLE08,
+  VARIABLE09,
+  VARIABLE10,
+  IGNORE_CRIPPLED_LIMBS;
+
+  private static final ActorValue[] VALUES = values();
+
+  /** The number of actor values. */
+  public static final int COUNT = VALUES.length;
+
+  private static final ActorValue[] SPECIAL = {
+      STRENGTH, PERCEPTION, ENDURANCE, CHARISMA, INTELLIGENCE, AGILITY, LUCK };
+
+  private static final ActorValue[] SKILLS = {
+      BARTER, BIG_GUNS, ENERGY_WEAPONS, EXPLOSIVES, LOCKPICK, MEDICINE, MELEE_WEAPONS,
+      REPAIR, SCIENCE, SMALL_GUNS, SNEAK, SPEECH, UNARMED };
+
+  private static final ActorValue[] RESISTANCES = {
+      DAMAGE_RESIST, POISON_RESIST, RAD_RESIST, FIRE_RESIST, ELECTRIC_RESIST, FROST_RESIST,
+      ENERGY_RESIST, EMP_RESIST };
+
+  /** The actor value code, as used by the game's console and scripts. */
+  public int getCode() {
+    return ordinal();
+  }
+
+  public static ActorValue fromCode(int code) {
+    return VALUES[code];
+  }
+
+  /** Strength to luck. */
+  public static ActorValue[] special() {
+    return SPECIAL.clone();
+  }
+
+  /** The skills the player can raise. Throwing is unused in FO3. */
+  public static ActorValue[] skills() {
+    return SKILLS.clone();
+  }
+
+  public static ActorValue[] resistances() {
+    return RESISTANCES.clone();
+  }
+}
@@ -0,0 +1,149 @@
+package save;
+
+import game.PlayerStats;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The player's actor value modifiers, read straight from the player's ACHR
+ * record when they're asked for rather than copied out when the record is
+ * decoded.
+ *
+ * The record has 220 floats, each followed by a pipe. The first block of
+ * {@link ActorValue#COUNT} is the temporary changes (e.g., from armor or
+ * alcohol), and the second the permanent ones (e.g., from bobbleheads).
+ * What the last 74 are is unknown. Raw indexes count floats from the start
+ * of the first block.
+ *
+ * The SPECIAL indexes agree with the actor value codes, but the player's
+ * experience is at raw index 98, one past XP in the permanent block, so
+ * later codes may not line up exactly.
+ *
+ * Like {@link FormChangeRecord#getData()}, the view reads the save's bytes,
+ * so it can't be used once the save is released; it throws
+ * IllegalStateException if it is.
+ */
+public final class ActorValues {
+
+  /** The number of floats. */
+  public static final int COUNT = 220;
+
+  /** Each float is followed by a pipe. */
+  private static final int STRIDE = 5;
+
+  private static final int TEMPORARY_BLOCK = 0;
+  private static final int PERMANENT_BLOCK = ActorValue.COUNT;
+  private static final int EXPERIENCE_INDEX = 98;
+
+  private static final int BASE_CARRY_WEIGHT = 150;
+  private static final int CARRY_WEIGHT_PER_STRENGTH = 10;
+
+  private final Fo3ByteSource source;
+  private final ByteBuffer data;
+  /** Where the first float is. */
+  private final int position;
+
+  ActorValues(Fo3ByteSource source, int position) {
+    this.source = source;
+    this.data = source.view().order(ByteOrder.LITTLE_ENDIAN);
+    this.position = position;
+  }
+
+  /** The float at the raw index, from 0 to COUNT - 1. */
+  public float getRaw(int index) {
+    if (index < 0 || index >= COUNT) {
+      throw new IndexOutOfBoundsException("Actor value index " + index + " of " + COUNT);
+    }
+    if (source.isReleased()) {
+      throw new IllegalStateException("The save's bytes were released: " + source.getFile());
+    }
+    return data.getFloat(position + index * STRIDE);
+  }
+
+  public float getTemporary(ActorValue actorValue) {
+    return getRaw(TEMPORARY_BLOCK + actorValue.ordinal());
+  }
+
+  public float getPermanent(ActorValue actorValue) {
+    return getRaw(PERMANENT_BLOCK + actorValue.ordinal());
+  }
+
+  /** The temporary and permanent changes together. */
+  public float getModifier(ActorValue actorValue) {
+    return getTemporary(actorValue) + getPermanent(actorValue);
+  }
+
+  public int getExperience() {
+    return (int) getRaw(EXPERIENCE_INDEX);
+  }
+
+  /** The change to each skill, see {@link ActorValue#skills()}. */
+  public Map<ActorValue, Float> getSkillModifiers() {
+    return getModifiers(ActorValue.skills());
+  }
+
+  /** The change to each resistance, see {@link ActorValue#resistances()}. */
+  public Map<ActorValue, Float> getResistanceModifiers() {
+    return getModifiers(ActorValue.resistances());
+  }
+
+  private Map<ActorValue, Float> getModifiers(ActorValue[] actorValues) {
+    Map<ActorValue, Float> modifiers = new EnumMap<>(ActorValue.class);
+    for (ActorValue actorValue : actorValues) {
+      modifiers.put(actorValue, getModifier(actorValue));
+    }
+    return modifiers;
+  }
+
+  /**
+   * How much the player can carry: 150, plus 10 per point of strength after
+   * the changes to it, plus the changes to carry weight itself, e.g., from
+   * the Strong Back perk.
+   *
+   * @param baseStrength the player's strength before any changes, from the
+   *     player's NPC record
+   */
+  public int getCarryWeight(int baseStrength) {
+    int strength = baseStrength
+        + (int) getTemporary(ActorValue.STRENGTH)
+        + (int) getPermanent(ActorValue.STRENGTH);
+    return BASE_CARRY_WEIGHT + strength * CARRY_WEIGHT_PER_STRENGTH
+        + (int) getModifier(ActorValue.CARRY_WEIGHT);
+  }
+
+  public PlayerStats getTemporaryStatChanges() {
+    return toPlayerStats(TEMPORARY_BLOCK);
+  }
+
+  public PlayerStats getPermanentStatChanges() {
+    return toPlayerStats(PERMANENT_BLOCK);
+  }
+
+  private PlayerStats toPlayerStats(int block) {
+    return new PlayerStats(
+        (int) getRaw(block + ActorValue.STRENGTH.ordinal()),
+        (int) getRaw(block + ActorValue.PERCEPTION.ordinal()),
+        (int) getRaw(block + ActorValue.ENDURANCE.ordinal()),
+        (int) getRaw(block + ActorValue.CHARISMA.ordinal()),
+        (int) getRaw(block + ActorValue.INTELLIGENCE.ordinal()),
+        (int) getRaw(block + ActorValue.AGILITY.ordinal()),
+        (int) getRaw(block + ActorValue.LUCK.ordinal()));
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder s = new StringBuilder("ActorValues(");
+    String separator = "";
+    for (ActorValue actorValue : ActorValue.values()) {
+      float modifier = getModifier(actorValue);
+      if (modifier != 0) {
+        s.append(separator).append(actorValue).append('=').append(modifier);
+        separator = ", ";
+      }
+    }
+    return s.append(')').toString();
+  }
+}
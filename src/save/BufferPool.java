@@ -0,0 +1,113 @@
+package save;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reusable buffers for loading saves, so that reloading a save every time the
+ * game writes one doesn't allocate a new multi-megabyte array each time.
+ *
+ * Buffers come in power of 2 size classes. A buffer is handed back with
+ * {@link SaveFile#release()} (or {@code Game.release()}) once nothing uses the
+ * save anymore, and the next load of a similar sized save gets it again.
+ */
+public class BufferPool {
+
+  private static final int MIN_CLASS = 16; // 64 KB
+  private static final int MAX_CLASS = 30; // 1 GB
+
+  private final boolean direct;
+  private final int maxBuffersPerClass;
+
+  // Index is log2 of the buffer capacity, minus MIN_CLASS.
+  private final List<ArrayDeque<ByteBuffer>> free = new ArrayList<>();
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * @param direct whether to allocate direct buffers rather than heap arrays
+   * @param maxBuffersPerClass how many free buffers to keep of each size
+   */
+  public BufferPool(boolean direct, int maxBuffersPerClass) {
+    this.direct = direct;
+    this.maxBuffersPerClass = maxBuffersPerClass;
+    for (int i = MIN_CLASS; i <= MAX_CLASS; i++) {
+      free.add(new ArrayDeque<>());
+    }
+  }
+
+  /**
+   * Returns a buffer with at least size bytes. Its position is 0 and its
+   * limit is size.
+   */
+  ByteBuffer acquire(int size) {
+
+    int sizeClass = sizeClass(size);
+
+    ArrayDeque<ByteBuffer> buffers = free.get(sizeClass - MIN_CLASS);
+    ByteBuffer buffer;
+    synchronized (buffers) {
+      buffer = buffers.pollFirst();
+    }
+
+    if (buffer == null) {
+      misses.incrementAndGet();
+      int capacity = 1 << sizeClass;
+      buffer = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    } else {
+      hits.incrementAndGet();
+    }
+
+    buffer.clear();
+    buffer.limit(size);
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    return buffer;
+  }
+
+  /**
+   * Hands a buffer from {@link #acquire(int)} back to the pool. Nothing may
+   * use the buffer afterwards.
+   */
+  void release(ByteBuffer buffer) {
+    int sizeClass = Integer.numberOfTrailingZeros(buffer.capacity());
+    ArrayDeque<ByteBuffer> buffers = free.get(sizeClass - MIN_CLASS);
+    synchronized (buffers) {
+      if (buffers.size() < maxBuffersPerClass) {
+        buffers.addFirst(buffer);
+      }
+    }
+  }
+
+  private static int sizeClass(int size) {
+    if (size < 0 || size > (1 << MAX_CLASS)) {
+      throw new IllegalArgumentException("Can't pool a buffer of " + size + " bytes");
+    }
+    int sizeClass = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+    return Math.max(MIN_CLASS, sizeClass);
+  }
+
+  public boolean isDirect() {
+    return direct;
+  }
+
+  /** Number of acquires that reused a free buffer. */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /** Number of acquires that had to allocate a new buffer. */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("BufferPool(%s): %d hits, %d misses",
+        direct ? "direct" : "heap", getHits(), getMisses());
+  }
+}
@@ -0,0 +1,290 @@
+package save;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import save.SaveFile.LoadException;
+
+/**
+ * The same inventory as {@link RawInventory}, stored in primitive arrays
+ * instead of an object per entry and per item info. Decoding a large
+ * container takes a handful of allocations however many items it has.
+ *
+ * Entries and item infos are numbered in file order. The item infos of
+ * entry e are numbered from {@link #getFirstItemInfo(int)} to
+ * {@link #getEndItemInfo(int)}.
+ */
+public final class CompactInventory {
+
+  private static final int FLAG_EQUIPPED = 1;
+  private static final int FLAG_UNKNOWN3 = 1 << 1;
+  private static final int FLAG_HOTKEY = 1 << 2;
+  /** The hotkey byte is kept in the second byte of the flags. */
+  private static final int HOTKEY_SHIFT = 8;
+
+  private static final int[] NO_FORM_ID_INDEXES = new int[0];
+  private static final float[] NO_FLOATS = new float[0];
+
+  private int entryCount;
+  private final int[] formIdIndexes;
+  private final int[] counts;
+  /** Entry -> its first item info. Has one more element than there are entries. */
+  private final int[] firstItemInfos;
+
+  private int itemInfoCount;
+  private int[] itemInfoCounts;
+  /** NaN when there's no condition. */
+  private float[] conditions;
+  private int[] flags;
+
+  // The rest of the tags are rare, so they're kept by item info, and only
+  // created when an item has them.
+  private IntIntHashMap owners;
+  private IntIntHashMap scripts;
+  private Map<Integer, int[]> unknown1s;
+  private Map<Integer, float[]> unknown2s;
+
+  private CompactInventory(int entryCapacity) {
+    formIdIndexes = new int[entryCapacity];
+    counts = new int[entryCapacity];
+    firstItemInfos = new int[entryCapacity + 1];
+    int itemInfoCapacity = Math.max(8, entryCapacity / 2);
+    itemInfoCounts = new int[itemInfoCapacity];
+    conditions = new float[itemInfoCapacity];
+    flags = new int[itemInfoCapacity];
+  }
+
+  /*
+   * Entries
+   */
+
+  public int getEntryCount() {
+    return entryCount;
+  }
+
+  /** Packed form id index, see {@link FormIdIndex} */
+  public int getFormIdIndex(int entry) {
+    return formIdIndexes[entry];
+  }
+
+  public int getCount(int entry) {
+    return counts[entry];
+  }
+
+  public int getFirstItemInfo(int entry) {
+    return firstItemInfos[entry];
+  }
+
+  public int getEndItemInfo(int entry) {
+    return firstItemInfos[entry + 1];
+  }
+
+  /**
+   * The packed form id index of each entry, e.g., for
+   * {@link FormIdTable#findFormIdsByFormIdIndexes(int[], int[], int)}.
+   */
+  public int[] getPackedFormIdIndexes() {
+    return Arrays.copyOf(formIdIndexes, entryCount);
+  }
+
+  /*
+   * Item infos
+   */
+
+  public int getItemInfoCount() {
+    return itemInfoCount;
+  }
+
+  /** How many of the entry's items the item info is for. */
+  public int getItemInfoItemCount(int itemInfo) {
+    return itemInfoCounts[itemInfo];
+  }
+
+  public boolean hasCondition(int itemInfo) {
+    return !Float.isNaN(conditions[itemInfo]);
+  }
+
+  /** The condition, or NaN if there isn't one. */
+  public float getCondition(int itemInfo) {
+    return conditions[itemInfo];
+  }
+
+  public boolean isEquipped(int itemInfo) {
+    return (flags[itemInfo] & FLAG_EQUIPPED) != 0;
+  }
+
+  public boolean hasHotkey(int itemInfo) {
+    return (flags[itemInfo] & FLAG_HOTKEY) != 0;
+  }
+
+  /** The hotkey, only meaningful if {@link #hasHotkey(int)}. */
+  public int getHotkey(int itemInfo) {
+    return (byte) (flags[itemInfo] >> HOTKEY_SHIFT);
+  }
+
+  /** Packed form id index of the owner, or FormIdIndex.NONE. */
+  public int getOwnerFormIdIndex(int itemInfo) {
+    return owners == null ? FormIdIndex.NONE : owners.get(itemInfo);
+  }
+
+  /** Packed form id index of the script, or FormIdIndex.NONE. */
+  public int getScriptFormIdIndex(int itemInfo) {
+    return scripts == null ? FormIdIndex.NONE : scripts.get(itemInfo);
+  }
+
+  public int[] getUnknown1(int itemInfo) {
+    int[] unknown1 = unknown1s == null ? null : unknown1s.get(itemInfo);
+    return unknown1 == null ? NO_FORM_ID_INDEXES : unknown1.clone();
+  }
+
+  public float[] getUnknown2(int itemInfo) {
+    float[] unknown2 = unknown2s == null ? null : unknown2s.get(itemInfo);
+    return unknown2 == null ? NO_FLOATS : unknown2.clone();
+  }
+
+  public boolean getUnknown3(int itemInfo) {
+    return (flags[itemInfo] & FLAG_UNKNOWN3) != 0;
+  }
+
+  /*
+   * Loading
+   */
+
+  private int addItemInfo() {
+    if (itemInfoCount == itemInfoCounts.length) {
+      int capacity = itemInfoCounts.length * 2;
+      itemInfoCounts = Arrays.copyOf(itemInfoCounts, capacity);
+      conditions = Arrays.copyOf(conditions, capacity);
+      flags = Arrays.copyOf(flags, capacity);
+    }
+    int itemInfo = itemInfoCount++;
+    itemInfoCounts[itemInfo] = 1;
+    conditions[itemInfo] = Float.NaN;
+    flags[itemInfo] = 0;
+    return itemInfo;
+  }
+
+  /**
+   * Loads an inventory record from the given data, like
+   * {@link RawInventory#load(Fo3ByteBuffer)}.
+   */
+  public static CompactInventory load(Fo3ByteBuffer data) throws LoadException {
+    Builder builder = new Builder();
+    InventoryDecoder.decode(data, builder);
+    return builder.build();
+  }
+
+  /**
+   * Decodes the player's inventory from the player's ACHR record, like
+   * {@link PlayerACHRFormChangeRecord#inventory}, without decoding the rest
+   * of the record.
+   */
+  public static CompactInventory loadPlayerInventory(FormChangeRecord formChangeRecord)
+      throws LoadException {
+    Builder builder = new Builder();
+    PlayerACHRFormChangeRecord.visitInventory(formChangeRecord, builder);
+    return builder.build();
+  }
+
+  private static class Builder implements InventoryVisitor {
+
+    private CompactInventory inventory;
+    private int item;
+
+    CompactInventory build() {
+      if (inventory == null) {
+        // The record has no inventory.
+        inventory = new CompactInventory(0);
+      }
+      inventory.firstItemInfos[inventory.entryCount] = inventory.itemInfoCount;
+      return inventory;
+    }
+
+    @Override
+    public void onInventory(int entryCount) {
+      inventory = new CompactInventory(entryCount);
+    }
+
+    @Override
+    public void onEntry(int inventoryIndex, int formIdIndex, int count, int itemInfoCount) {
+      inventory.formIdIndexes[inventoryIndex] = formIdIndex;
+      inventory.counts[inventoryIndex] = count;
+      inventory.firstItemInfos[inventoryIndex] = inventory.itemInfoCount;
+      inventory.entryCount++;
+    }
+
+    @Override
+    public void onItemInfo(int tagCount) {
+      item = inventory.addItemInfo();
+    }
+
+    @Override
+    public void onTag(byte tag, int intValue, float floatValue) {
+
+      switch (tag) {
+
+      case TAG_CONDITION:
+        inventory.conditions[item] = floatValue;
+        break;
+
+      case TAG_CONDITION_COUNT:
+        inventory.itemInfoCounts[item] = intValue;
+        break;
+
+      case TAG_EQUIPPED:
+        inventory.flags[item] |= FLAG_EQUIPPED;
+        break;
+
+      case TAG_HOTKEY:
+        inventory.flags[item] =
+            (inventory.flags[item] & ~(0xFF << HOTKEY_SHIFT))
+            | FLAG_HOTKEY | ((intValue & 0xFF) << HOTKEY_SHIFT);
+        break;
+
+      case TAG_OWNER:
+        if (inventory.owners == null) {
+          inventory.owners = new IntIntHashMap(8, FormIdIndex.NONE);
+        }
+        inventory.owners.put(item, intValue);
+        break;
+
+      case TAG_SCRIPT:
+        if (inventory.scripts == null) {
+          inventory.scripts = new IntIntHashMap(8, FormIdIndex.NONE);
+        }
+        inventory.scripts.put(item, intValue);
+        break;
+
+      case TAG_UNKNOWN1: {
+        if (inventory.unknown1s == null) {
+          inventory.unknown1s = new HashMap<>();
+        }
+        int[] unknown1 = inventory.unknown1s.getOrDefault(item, NO_FORM_ID_INDEXES);
+        unknown1 = Arrays.copyOf(unknown1, unknown1.length + 1);
+        unknown1[unknown1.length - 1] = intValue;
+        inventory.unknown1s.put(item, unknown1);
+      } break;
+
+      case TAG_UNKNOWN2: {
+        if (inventory.unknown2s == null) {
+          inventory.unknown2s = new HashMap<>();
+        }
+        float[] unknown2 = inventory.unknown2s.getOrDefault(item, NO_FLOATS);
+        unknown2 = Arrays.copyOf(unknown2, unknown2.length + 1);
+        unknown2[unknown2.length - 1] = floatValue;
+        inventory.unknown2s.put(item, unknown2);
+      } break;
+
+      case TAG_UNKNOWN3:
+        inventory.flags[item] |= FLAG_UNKNOWN3;
+        break;
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format("CompactInventory(%d entries, %d item infos)", entryCount, itemInfoCount);
+  }
+}
@@ -0,0 +1,286 @@
+package save;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import save.SaveFile.LoadException;
+
+/**
+ * Typed decoders for form change records, looked up by form id first and
+ * then by form type. Decoded records are kept in a bounded LRU cache per
+ * save until the save is released or collected, and each decoder counts how
+ * often and how long it runs.
+ *
+ * Register decoders before decoding anything; decoding can then be done
+ * from any thread.
+ */
+public class DecoderRegistry {
+
+  /**
+   * Counters for one decoder.
+   */
+  public static class Stats {
+
+    public final String name;
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private Stats(String name) {
+      this.name = name;
+    }
+
+    /** Records decoded, including the ones that failed. */
+    public long getCount() {
+      return count.get();
+    }
+
+    /** Bytes of record data decoded. */
+    public long getBytes() {
+      return bytes.get();
+    }
+
+    public long getNanos() {
+      return nanos.get();
+    }
+
+    public long getFailures() {
+      return failures.get();
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: %d decoded, %d bytes, %.3f ms, %d failed",
+          name, getCount(), getBytes(), getNanos() / 1e6, getFailures());
+    }
+  }
+
+  private static class Registration {
+
+    final FormChangeRecordDecoder<?> decoder;
+    final Stats stats;
+
+    Registration(String name, FormChangeRecordDecoder<?> decoder) {
+      this.decoder = decoder;
+      this.stats = new Stats(name);
+    }
+  }
+
+  /** Form type (6 bits) -> registration */
+  private final Registration[] byFormType = new Registration[64];
+  private final Map<Integer, Registration> byFormId = new HashMap<>();
+  private final List<Registration> registrations = new ArrayList<>();
+
+  private final int maxCachedRecords;
+
+  /**
+   * Source -> position -> decoded record. Guarded by itself. Sources are
+   * weak keys, but a record that holds its source, like ActorValues, keeps
+   * it until it's released, so released sources are dropped too.
+   */
+  private final Map<Fo3ByteSource, Map<Integer, Object>> caches = new WeakHashMap<>();
+
+  private final AtomicLong cacheHits = new AtomicLong();
+
+  /**
+   * @param maxCachedRecords how many decoded records to keep per save
+   */
+  public DecoderRegistry(int maxCachedRecords) {
+    this.maxCachedRecords = maxCachedRecords;
+  }
+
+  /**
+   * Decodes records of the given form type, unless there's a decoder for
+   * the record's form id.
+   */
+  public synchronized void registerFormType(
+      int formType, String name, FormChangeRecordDecoder<?> decoder) {
+    byFormType[formType] = register(name, decoder);
+  }
+
+  /**
+   * Decodes the record for the given form id.
+   */
+  public synchronized void registerFormId(
+      int formId, String name, FormChangeRecordDecoder<?> decoder) {
+    byFormId.put(formId, register(name, decoder));
+  }
+
+  private Registration register(String name, FormChangeRecordDecoder<?> decoder) {
+    Registration registration = new Registration(name, Objects.requireNonNull(decoder));
+    registrations.add(registration);
+    return registration;
+  }
+
+  /**
+   * Decodes the record for the given form id in the save.
+   *
+   * @return the decoded record, or null if the save has no record for the
+   *     form id
+   * @throws LoadException if there's no decoder for the record, the decoded
+   *     record isn't a T, or the decoder fails
+   */
+  public <T> T decode(SaveFile save, int formId, Class<T> type) throws LoadException {
+    FormChangeRecord formChangeRecord = save.getFormChangeRecord(formId);
+    if (formChangeRecord == null) {
+      return null;
+    }
+    Object decoded = decode(formChangeRecord, formId);
+    if (!type.isInstance(decoded)) {
+      throw new LoadException("Form 0x%08X decoded to %s, not %s",
+          formId, decoded == null ? null : decoded.getClass().getName(), type.getName());
+    }
+    return type.cast(decoded);
+  }
+
+  /**
+   * Decodes the records for the given form ids in one pass, in parallel,
+   * see {@link FormChangeRecordTable#decodeAll(RecordSet,
+   * FormChangeRecordDecoder, ForkJoinPool)}. This builds the whole form
+   * change record table, so decode single records with
+   * {@link #decode(SaveFile, int, Class)}, which doesn't in a lazily loaded
+   * save.
+   *
+   * @return the decoded records, in the order of the form ids, with null for
+   *     the form ids the save has no record for
+   * @throws LoadException like {@link #decode(FormChangeRecord, int)}, for
+   *     the first failed record in file order
+   */
+  public Object[] decodeAll(SaveFile save, int... formIds) throws LoadException {
+    FormIdTable formIdTable = save.getFormIdTable();
+    FormChangeRecordTable table = save.getFormChangeRecordTable();
+
+    int[] formIdIndexes = new int[formIds.length];
+    for (int i = 0; i < formIds.length; i++) {
+      formIdIndexes[i] = formIdTable.findPackedFormIdIndexByFormId(formIds[i]);
+    }
+
+    // Each record writes its own elements, and the pool's invoke makes the
+    // writes visible here.
+    Object[] decoded = new Object[formIds.length];
+    table.decodeAll(table.withFormIdIndexes(formIdIndexes), formChangeRecord -> {
+      for (int i = 0; i < formIds.length; i++) {
+        if (formIdIndexes[i] == formChangeRecord.formIdIndex) {
+          decoded[i] = decode(formChangeRecord, formIds[i]);
+        }
+      }
+      return null;
+    }, ForkJoinPool.commonPool());
+    return decoded;
+  }
+
+  /**
+   * Decodes the record with the decoder for its form type.
+   */
+  public Object decode(FormChangeRecord formChangeRecord) throws LoadException {
+    return decode(formChangeRecord, -1);
+  }
+
+  /**
+   * Decodes the record with the decoder for the given form id, or else
+   * the decoder for its form type.
+   */
+  public Object decode(FormChangeRecord formChangeRecord, int formId) throws LoadException {
+
+    Registration registration = find(formChangeRecord, formId);
+    if (registration == null) {
+      throw new LoadException("No decoder for form type 0x%02X of the record at 0x%08X",
+          formChangeRecord.formType, formChangeRecord.position);
+    }
+
+    Map<Integer, Object> cache = getCache(formChangeRecord.source);
+    synchronized (cache) {
+      Object cached = cache.get(formChangeRecord.position);
+      if (cached != null) {
+        cacheHits.incrementAndGet();
+        return cached;
+      }
+    }
+
+    // Decoded outside the lock, so threads that race here may each decode
+    // the same record once.
+    Stats stats = registration.stats;
+    long start = System.nanoTime();
+    Object decoded;
+    try {
+      decoded = registration.decoder.decode(formChangeRecord);
+    } catch (LoadException | RuntimeException e) {
+      stats.failures.incrementAndGet();
+      throw e;
+    } finally {
+      stats.count.incrementAndGet();
+      stats.bytes.addAndGet(formChangeRecord.size);
+      stats.nanos.addAndGet(System.nanoTime() - start);
+    }
+
+    if (decoded != null) {
+      synchronized (cache) {
+        cache.put(formChangeRecord.position, decoded);
+      }
+    }
+    return decoded;
+  }
+
+  /**
+   * The records decoded from the source, by position, guarded by itself.
+   */
+  private Map<Integer, Object> getCache(Fo3ByteSource source) {
+    synchronized (caches) {
+      Map<Integer, Object> cache = caches.get(source);
+      if (cache == null) {
+        // Saves that were released without forget().
+        caches.keySet().removeIf(Fo3ByteSource::isReleased);
+        cache = new LinkedHashMap<Integer, Object>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Integer, Object> eldest) {
+            return size() > maxCachedRecords;
+          }
+        };
+        caches.put(source, cache);
+      }
+      return cache;
+    }
+  }
+
+  private synchronized Registration find(FormChangeRecord formChangeRecord, int formId) {
+    Registration registration = formId == -1 ? null : byFormId.get(formId);
+    if (registration == null) {
+      registration = byFormType[formChangeRecord.formType & 0b0011_1111];
+    }
+    return registration;
+  }
+
+  /**
+   * Drops the cached records of the given save, e.g., when it's released.
+   */
+  public void forget(SaveFile save) {
+    synchronized (caches) {
+      caches.remove(save.getSource());
+    }
+  }
+
+  public long getCacheHits() {
+    return cacheHits.get();
+  }
+
+  /**
+   * The counters of each decoder, in the order they were registered.
+   */
+  public synchronized List<Stats> getStats() {
+    List<Stats> stats = new ArrayList<>();
+    for (Registration registration : registrations) {
+      stats.add(registration.stats);
+    }
+    return Collections.unmodifiableList(stats);
+  }
+}
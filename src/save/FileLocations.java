@@ -1,7 +1,12 @@
 package save;
 
+import save.SaveFile.LoadException;
+
 public class FileLocations {
 
+  /** Size in bytes of the file location table. */
+  static final int SIZE = 8 * 4 + 0x4E;
+
   public final int formIdTableAddress;
   public final int unknownTableAddress;
   public final int globalDataTable1Address;
@@ -66,6 +71,48 @@ public class FileLocations {
         formChangeRecordsCount);
   }
 
+  /**
+   * Checks that the tables are inside a file of the given size.
+   */
+  void checkBounds(int numBytes) throws LoadException {
+    int[] addresses = {
+        formIdTableAddress,
+        globalDataTable1Address,
+        formChangeRecordsTableAddress,
+        globalDataTable2Address
+    };
+    for (int address : addresses) {
+      if (address < 0 || address > numBytes) {
+        throw new LoadException(
+            "Table address 0x%08X is outside of the file (0x%08X bytes)", address, numBytes);
+      }
+    }
+    if (formChangeRecordsCount < 0) {
+      throw new LoadException("Negative form change record count: %d", formChangeRecordsCount);
+    }
+  }
+
+  /**
+   * Whether the table appears to have been filled in. While the game is
+   * writing a save, the table can still be zeros.
+   */
+  boolean isWritten(int tableEnd) {
+    return formIdTableAddress >= tableEnd
+        && globalDataTable1Address >= tableEnd
+        && formChangeRecordsTableAddress >= tableEnd;
+  }
+
+  /**
+   * The address that the form change records must end by.
+   */
+  int formChangeRecordsTableEnd(int numBytes) {
+    // Global data table 2 follows the form change records.
+    if (globalDataTable2Address > formChangeRecordsTableAddress) {
+      return globalDataTable2Address;
+    }
+    return numBytes;
+  }
+
   @Override
   public String toString() {
 
@@ -1,37 +1,139 @@
 package save;
 import java.io.File;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.file.Files;
 
 import save.SaveFile.LoadException;
 
 public class Fo3ByteBuffer {
 
-  private final File file;
+  /**
+   * How the bytes of a save file are brought into memory.
+   */
+  public enum LoadMode {
+    /** Read the whole file into a heap array. */
+    HEAP,
+    /**
+     * Memory map the file read-only. Pages that are never read (e.g., the
+     * screenshot, or records that are skipped) are never loaded or copied.
+     * Note that on Windows a mapped file can't be replaced while the mapping
+     * is still reachable, so the game may fail to overwrite a mapped save.
+     */
+    MAPPED
+  }
 
+  /**
+   * How much checking is done while decoding.
+   */
+  public enum Validation {
+    /**
+     * Every read records its position for error messages, and every pipe
+     * is checked. Use this for diagnosing new file variants.
+     */
+    STRICT,
+    /**
+     * Positions aren't recorded and pipes are skipped without being checked.
+     * The record framing is still checked once when the tables are loaded.
+     */
+    TRUSTED
+  }
+
+  private final Fo3ByteSource source;
+
+  /** This cursor's own view of the source's bytes. */
   private final ByteBuffer data;
+  private final boolean trusted;
   private int previousPosition;
 
+  // The last run of pipes checked by checkPipes(), so the reads in it don't
+  // check each pipe again.
+  private int checkedStart;
+  private int checkedEnd;
+  private int checkedStride = 1;
+  private int checkedValueSize;
+
   public Fo3ByteBuffer(File f) throws IOException {
-    this.file = f;
-    this.data = ByteBuffer.wrap(Files.readAllBytes(f.toPath()));
-    this.data.order(ByteOrder.LITTLE_ENDIAN);
+    this(f, LoadMode.HEAP);
+  }
+
+  public Fo3ByteBuffer(File f, LoadMode loadMode) throws IOException {
+    this(f, loadMode, Validation.STRICT);
+  }
+
+  public Fo3ByteBuffer(File f, LoadMode loadMode, Validation validation) throws IOException {
+    this(Fo3ByteSource.load(f, loadMode, validation));
   }
 
+  /**
+   * Reads the whole file into a buffer from the given pool. The buffer goes
+   * back to the pool on {@link #release()}.
+   */
+  public Fo3ByteBuffer(File f, BufferPool pool, Validation validation) throws IOException {
+    this(Fo3ByteSource.load(f, pool, validation));
+  }
+
+  /**
+   * Wraps bytes that have already been read, e.g., a prefix of a file.
+   */
+  Fo3ByteBuffer(File f, ByteBuffer data) {
+    this(f, data, Validation.STRICT);
+  }
+
+  Fo3ByteBuffer(File f, ByteBuffer data, Validation validation) {
+    this(f, data, validation, null);
+  }
+
+  /**
+   * Wraps a buffer from the given pool, which it's returned to on release.
+   */
+  Fo3ByteBuffer(File f, ByteBuffer data, Validation validation, BufferPool pool) {
+    this(new Fo3ByteSource(f, data, validation, pool));
+  }
+
+  /**
+   * A new cursor over the same source, at the same position.
+   */
   public Fo3ByteBuffer(Fo3ByteBuffer base) {
-    this.file = base.file;
-    this.data = ByteBuffer.wrap(base.data.array());
+    this(base.source);
+    position(base.position());
+  }
+
+  /**
+   * A new cursor at the start of the source, see {@link Fo3ByteSource#cursor()}.
+   */
+  Fo3ByteBuffer(Fo3ByteSource source) {
+    this.source = source;
+    this.trusted = source.getValidation() == Validation.TRUSTED;
+    this.data = source.view();
     this.data.order(ByteOrder.LITTLE_ENDIAN);
   }
-  
+
+  public Fo3ByteSource getSource() {
+    return source;
+  }
+
   public File getFile() {
-    return file;
+    return source.getFile();
+  }
+
+  /**
+   * Releases the source, see {@link Fo3ByteSource#release()}.
+   */
+  public void release() {
+    source.release();
+  }
+
+  /**
+   * The underlying buffer, for reading with absolute gets only.
+   */
+  ByteBuffer buffer() {
+    return data;
   }
   
   public int numBytes() {
-    return data.capacity();
+    return data.limit();
   }
 
   public int remainingBytes() {
@@ -50,12 +152,22 @@ public class Fo3ByteBuffer {
     return "0x" + Integer.toHexString(position()).toUpperCase();
   }
 
+  public Validation validation() {
+    return trusted ? Validation.TRUSTED : Validation.STRICT;
+  }
+
+  /**
+   * The position of the start of the last value read. In trusted mode
+   * positions aren't recorded, so this is just the current position.
+   */
   public int previousPosition() {
-    return previousPosition;
+    return trusted ? data.position() : previousPosition;
   }
   
   private void recordPosition() {
-    this.previousPosition = data.position();
+    if (!trusted) {
+      this.previousPosition = data.position();
+    }
   }
   
   /******************************************
@@ -194,14 +306,46 @@ public class Fo3ByteBuffer {
     return readString(length, true);
   }
 
+  /**
+   * Reads a Windows-1252 string. Short strings come from a cache shared
+   * by all loads, see {@link Fo3Strings}.
+   */
   public String readString(int length, boolean readPipe) {
-    byte[] bytes = new byte[length];
     recordPosition();
-    data.get(bytes);
+    int index = skipString(length);
+    String s = Fo3Strings.decode(data, index, length);
     if (readPipe) {
       assertPipe(false);
     }
-    return new String(bytes);
+    return s;
+  }
+
+  /**
+   * Reads a BString as a view that's only decoded when its chars are used,
+   * for strings that are rarely displayed, see {@link Fo3Strings.LazyString}.
+   */
+  public CharSequence readLazyBString() {
+    short length = readShort();
+    recordPosition();
+    int index = skipString(length);
+    assertPipe(false);
+    return new Fo3Strings.LazyString(source, index, length);
+  }
+
+  /**
+   * Moves past a string of the given length and returns where it starts.
+   */
+  private int skipString(int length) {
+    if (length < 0) {
+      throw new IllegalArgumentException(
+          String.format("Negative string length at 0x%08X: %d", data.position(), length));
+    }
+    if (length > data.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    int index = data.position();
+    data.position(index + length);
+    return index;
   }
 
   /*****************************************************
@@ -221,19 +365,43 @@ public class Fo3ByteBuffer {
    * interested in.
    */
   private void assertPipe(boolean recordPosition) {
+    if (trusted || isCheckedPipe(data.position())) {
+      skipBytes(1);
+      return;
+    }
     if (recordPosition) {
       recordPosition();
     }
     byte actual = data.get();
     if (actual != 0x7C) {
       throw new AssertionError(String.format(
-          "Expected pipe at 0x%08X but got 0x%02X", actual, data.position() - 1));
+          "Expected pipe at 0x%08X but got 0x%02X", data.position() - 1, actual));
     }
   }
 
   public void assertPipe() {
     assertPipe(true);
   }
+
+  /**
+   * Checks in one pass that the next count values of valueSize bytes are
+   * each followed by a pipe. This is done regardless of the validation mode,
+   * and doesn't change the position in the buffer. Reads of the values then
+   * skip their pipes without checking them again.
+   */
+  public void checkPipes(int valueSize, int count) throws LoadException {
+    int start = data.position();
+    PipeValidator.checkStrided(data, start, valueSize, count);
+    checkedStart = start;
+    checkedEnd = start + (valueSize + 1) * count;
+    checkedStride = valueSize + 1;
+    checkedValueSize = valueSize;
+  }
+
+  private boolean isCheckedPipe(int position) {
+    return position >= checkedStart && position < checkedEnd
+        && (position - checkedStart) % checkedStride == checkedValueSize;
+  }
   
   /**
    * Reads a form index: a 3-byte big-ending value and a pipe.
@@ -246,19 +414,29 @@ public class Fo3ByteBuffer {
    * Reads a form index: a 3-byte big-ending value.
    */
   public FormIdIndex readFormIdIndex(boolean readPipe) {
+    return new FormIdIndex(readPackedFormIdIndex(readPipe));
+  }
 
-    byte b1 = readByte(false);
-    byte b2 = readByte(false);
-    byte b3 = readByte(false);
-    
-    int formIdIndex = (0xFF0000 & (b1 << 16)) |
-                      (0x00FF00 & (b2 <<  8)) |
-                      (0x0000FF & b3);
+  /**
+   * Reads a form index and a pipe, without allocating a FormIdIndex.
+   */
+  public int readPackedFormIdIndex() {
+    return readPackedFormIdIndex(true);
+  }
+
+  /**
+   * Reads a form index as a packed 24-bit int, without allocating a FormIdIndex.
+   */
+  public int readPackedFormIdIndex(boolean readPipe) {
+    recordPosition();
+    int formIdIndex = ((data.get() & 0xFF) << 16) |
+                      ((data.get() & 0xFF) <<  8) |
+                       (data.get() & 0xFF);
 
     if (readPipe) {
       assertPipe(false);
     }
-    return new FormIdIndex(formIdIndex);
+    return formIdIndex;
   }
 
   /**
@@ -338,7 +516,14 @@ public class Fo3ByteBuffer {
     return readString(length);
   }
 
+  /**
+   * Moves forward n bytes. Like the reads, throws BufferUnderflowException
+   * if there aren't n bytes left.
+   */
   public void skipBytes(int n) {
+    if (n > data.remaining()) {
+      throw new BufferUnderflowException();
+    }
     data.position(data.position() + n);
   }
 
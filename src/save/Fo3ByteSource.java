@@ -0,0 +1,151 @@
+package save;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import save.Fo3ByteBuffer.LoadMode;
+import save.Fo3ByteBuffer.Validation;
+
+/**
+ * The bytes of a loaded save file, shared by any number of
+ * {@link Fo3ByteBuffer} cursors. The source itself has no position and its
+ * bytes are never changed, so it can be used from any thread, as long as
+ * each thread reads through its own cursor.
+ */
+public final class Fo3ByteSource {
+
+  private final File file;
+  /** Never positioned, only duplicated or read with absolute gets. */
+  private final ByteBuffer bytes;
+  private final Validation validation;
+
+  /** The pool to return bytes to on release, or null if bytes aren't pooled. */
+  private BufferPool pool;
+  private volatile boolean released;
+
+  Fo3ByteSource(File file, ByteBuffer bytes, Validation validation, BufferPool pool) {
+    this.file = file;
+    this.bytes = bytes;
+    this.validation = validation;
+    this.pool = pool;
+  }
+
+  /**
+   * Reads or maps the whole file.
+   */
+  public static Fo3ByteSource load(File f, LoadMode loadMode, Validation validation)
+      throws IOException {
+    ByteBuffer bytes;
+    if (loadMode == LoadMode.MAPPED) {
+      // The mapping stays valid after the channel is closed.
+      try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+        bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+    } else {
+      bytes = ByteBuffer.wrap(Files.readAllBytes(f.toPath()));
+    }
+    return new Fo3ByteSource(f, bytes, validation, null);
+  }
+
+  /**
+   * Reads the whole file into a buffer from the given pool. The buffer goes
+   * back to the pool on {@link #release()}.
+   */
+  public static Fo3ByteSource load(File f, BufferPool pool, Validation validation)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException(f + " is too large: " + size + " bytes");
+      }
+      ByteBuffer buffer = pool.acquire((int) size);
+      try {
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer) < 0) {
+            throw new IOException(f + " got shorter while it was being read");
+          }
+        }
+      } catch (IOException e) {
+        pool.release(buffer);
+        throw e;
+      }
+      buffer.flip();
+      return new Fo3ByteSource(f, buffer, validation, pool);
+    }
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public Validation getValidation() {
+    return validation;
+  }
+
+  /**
+   * Whether {@link #release()} has been called. Readers that outlive a
+   * load, like {@link ActorValues}, check it rather than read bytes that
+   * may belong to another save by now.
+   */
+  public boolean isReleased() {
+    return released;
+  }
+
+  public int numBytes() {
+    return bytes.limit();
+  }
+
+  /**
+   * A new cursor at the start of the file.
+   */
+  public Fo3ByteBuffer cursor() {
+    return new Fo3ByteBuffer(this);
+  }
+
+  /**
+   * A new cursor at the given position.
+   */
+  public Fo3ByteBuffer cursor(int position) {
+    Fo3ByteBuffer cursor = new Fo3ByteBuffer(this);
+    cursor.position(position);
+    return cursor;
+  }
+
+  /**
+   * The byte at the index. An absolute get doesn't change the shared
+   * buffer, so it's safe from any thread.
+   */
+  byte get(int index) {
+    return bytes.get(index);
+  }
+
+  /**
+   * A view of the bytes with its own position, starting at 0. duplicate()
+   * only reads the shared buffer's fields, and nothing ever changes them.
+   */
+  ByteBuffer view() {
+    return bytes.duplicate();
+  }
+
+  /**
+   * Returns pooled bytes to their pool. Nothing that reads these bytes (the
+   * cursors, and the records and images made from them) may be used
+   * afterwards, whether or not they're pooled. Does nothing if the bytes
+   * were already released.
+   */
+  public void release() {
+    BufferPool pool;
+    synchronized (this) {
+      pool = this.pool;
+      this.pool = null;
+      released = true;
+    }
+    if (pool != null) {
+      pool.release(bytes);
+    }
+  }
+}
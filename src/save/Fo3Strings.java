@@ -0,0 +1,172 @@
+package save;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes the strings in save files. The game writes Windows-1252, which
+ * maps each byte to exactly one char, so strings are decoded with a lookup
+ * table.
+ *
+ * Short strings are kept in a cache that's shared by all loads, since
+ * plugin names and locations repeat in every save in a directory.
+ */
+public class Fo3Strings {
+
+  public static final Charset CHARSET = Charset.forName("windows-1252");
+
+  /** Strings longer than this aren't cached. */
+  private static final int MAX_INTERNED_LENGTH = 64;
+
+  /** Must be a power of 2. */
+  private static final int CACHE_SIZE = 1024;
+
+  private static final char[] CHARS = decodeTable();
+
+  /**
+   * A cached string and the bytes it was decoded from. Entries are
+   * immutable, so the cache can be read and replaced without locking.
+   */
+  private static class Entry {
+    final byte[] bytes;
+    final String string;
+
+    Entry(byte[] bytes, String string) {
+      this.bytes = bytes;
+      this.string = string;
+    }
+  }
+
+  // Direct mapped: a new string replaces whatever was in its slot.
+  private static final Entry[] cache = new Entry[CACHE_SIZE];
+
+  private Fo3Strings() {
+  }
+
+  /**
+   * Decodes length bytes at the given absolute index of data. Short strings
+   * are returned from the cache without allocating anything.
+   */
+  static String decode(ByteBuffer data, int index, int length) {
+
+    if (length > MAX_INTERNED_LENGTH) {
+      return decodeUncached(data, index, length);
+    }
+
+    int hash = 1;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + data.get(index + i);
+    }
+    int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+
+    Entry entry = cache[slot];
+    if (entry != null && matches(entry.bytes, data, index, length)) {
+      return entry.string;
+    }
+
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = data.get(index + i);
+    }
+    String string = decodeUncached(data, index, length);
+    cache[slot] = new Entry(bytes, string);
+    return string;
+  }
+
+  private static boolean matches(byte[] bytes, ByteBuffer data, int index, int length) {
+    if (bytes.length != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (bytes[i] != data.get(index + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String decodeUncached(ByteBuffer data, int index, int length) {
+    if (data.hasArray()) {
+      return new String(data.array(), data.arrayOffset() + index, length, CHARSET);
+    }
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = CHARS[data.get(index + i) & 0xFF];
+    }
+    return new String(chars);
+  }
+
+  private static char[] decodeTable() {
+    CharsetDecoder decoder = CHARSET.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    char[] chars = new char[256];
+    for (int b = 0; b < 256; b++) {
+      try {
+        CharBuffer c = decoder.decode(ByteBuffer.wrap(new byte[] { (byte) b }));
+        chars[b] = c.length() == 1 ? c.get(0) : '\uFFFD';
+      } catch (CharacterCodingException e) {
+        chars[b] = '\uFFFD';
+      }
+    }
+    return chars;
+  }
+
+  /**
+   * A string that is decoded a char at a time straight from the save's
+   * bytes, for strings that usually aren't displayed. Like
+   * {@link ActorValues}, it throws IllegalStateException once the bytes are
+   * released, as they may belong to another save by then.
+   */
+  public static class LazyString implements CharSequence {
+
+    private final Fo3ByteSource source;
+    private final int index;
+    private final int length;
+
+    LazyString(Fo3ByteSource source, int index, int length) {
+      this.source = source;
+      this.index = index;
+      this.length = length;
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(int i) {
+      if (i < 0 || i >= length) {
+        throw new IndexOutOfBoundsException("index " + i + ", length " + length);
+      }
+      checkNotReleased();
+      return CHARS[source.get(index + i) & 0xFF];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      if (start < 0 || end > length || start > end) {
+        throw new IndexOutOfBoundsException(
+            "start " + start + ", end " + end + ", length " + length);
+      }
+      return new LazyString(source, index + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+      checkNotReleased();
+      return decode(source.view(), index, length);
+    }
+
+    private void checkNotReleased() {
+      if (source.isReleased()) {
+        throw new IllegalStateException("The save's bytes were released: " + source.getFile());
+      }
+    }
+  }
+}
@@ -3,9 +3,20 @@ package save;
 
 public class FormChangeRecord {
 
+  // Change flags, see changeFlags.
+  public static final int FLAG_BASE_DATA = 1 << 1;
+  public static final int FLAG_ATTRIBUTES = 1 << 2;
+  public static final int FLAG_SPELL_LIST = 1 << 4;
+  // TES4 had this as bit 27, but it appears to be bit 5 in FO3
+  //
+  // See http://www.uesp.net/wiki/Tes4Mod:Save_File_Format/Player_Data
+  // and determine_flags.py.
+  public static final int FLAG_INVENTORY = 1 << 5;
+
   /** Position of the record in the file */
   public final int position;
-  public final FormIdIndex formIdIndex;
+  /** Packed form id index, see {@link FormIdIndex} */
+  public final int formIdIndex;
   public final int changeFlags;
 
   /**
@@ -19,10 +30,11 @@ public class FormChangeRecord {
   /** Position of the data for this record in the file */
   public final int dataPosition;
 
-  protected final Fo3ByteBuffer data;
+  /** The bytes of the whole file, read through cursors from {@link #getData()} */
+  protected final Fo3ByteSource source;
 
-  FormChangeRecord(int position, FormIdIndex formIdIndex, int changeFlags, byte formType,
-      byte version, int size, int dataPosition, Fo3ByteBuffer data) {
+  FormChangeRecord(int position, int formIdIndex, int changeFlags, byte formType,
+      byte version, int size, int dataPosition, Fo3ByteSource source) {
     this.position = position;
     this.formIdIndex = formIdIndex;
     this.changeFlags = changeFlags;
@@ -30,7 +42,7 @@ public class FormChangeRecord {
     this.version = version;
     this.size = size;
     this.dataPosition = dataPosition;
-    this.data = data;
+    this.source = source;
   }
 
   protected FormChangeRecord(FormChangeRecord base) {
@@ -42,27 +54,27 @@ public class FormChangeRecord {
         base.version,
         base.size,
         base.dataPosition,
-        base.data);
+        base.source);
+  }
+
+  public FormIdIndex getFormIdIndex() {
+    return new FormIdIndex(formIdIndex);
   }
 
   public boolean hasInventoryChange() {
-    // TES4 had this as bit 27, but it appears to be bit 5 in FO3
-    //
-    // See http://www.uesp.net/wiki/Tes4Mod:Save_File_Format/Player_Data
-    // and determine_flags.py.
-    return hasFlag(0b0010_0000);
+    return hasFlag(FLAG_INVENTORY);
   }
 
   public boolean hasBaseData() {
-    return hasFlag(1 << 1);
+    return hasFlag(FLAG_BASE_DATA);
   }
   
   public boolean hasSpellListChange() {
-    return hasFlag(1 << 4);
+    return hasFlag(FLAG_SPELL_LIST);
   }
   
   public boolean hasAttributes() {
-    return hasFlag(1 << 2);
+    return hasFlag(FLAG_ATTRIBUTES);
   }
 
   private boolean hasFlag(int flag) {
@@ -73,7 +85,7 @@ public class FormChangeRecord {
   public String toString() {
     return new StringBuilder()
        .append(String.format("Position: 0x%08X\n", position))
-       .append(String.format("Form Id Index: 0x%08X\n", formIdIndex))
+       .append(String.format("Form Id Index: 0x%06X\n", formIdIndex))
        .append(String.format("Change Flags: 0x%08X\n", changeFlags))
        .append(String.format("Form Type: 0x%02X\n", formType))
        .append(String.format("Version: 0x%02X\n", version))
@@ -82,10 +94,12 @@ public class FormChangeRecord {
         .toString();
   }
 
+  /**
+   * A new cursor at the start of this record's data. Each caller gets its
+   * own position, so records can be decoded on different threads.
+   */
   public Fo3ByteBuffer getData() {
-    Fo3ByteBuffer d = new Fo3ByteBuffer(data);
-    d.position(dataPosition);
-    return d;
+    return source.cursor(dataPosition);
   }
 
   public String dumpAscii() {
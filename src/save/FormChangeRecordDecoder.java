@@ -0,0 +1,29 @@
+package save;
+
+import save.SaveFile.LoadException;
+
+/**
+ * Decodes the body of a form change record into something typed, e.g.,
+ * {@link PlayerACHRFormChangeRecord#parseFrom(FormChangeRecord)}.
+ *
+ * Decoders are called from several threads at once by
+ * {@link FormChangeRecordTable#decodeAll(FormChangeRecordDecoder)}, so they
+ * must only read the record through its own {@link FormChangeRecord#getData()}
+ * cursor.
+ */
+@FunctionalInterface
+public interface FormChangeRecordDecoder<T> {
+
+  /**
+   * Whether records of the given form type should be decoded. Records that
+   * aren't accepted are skipped without creating a FormChangeRecord.
+   */
+  default boolean accepts(byte formType) {
+    return true;
+  }
+
+  /**
+   * @return the decoded record, or null to leave it out of the results
+   */
+  T decode(FormChangeRecord formChangeRecord) throws LoadException;
+}
@@ -1,36 +1,462 @@
 package save;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import save.SaveFile.LoadException;
 
+/**
+ * The form change records, stored as columns: one array per header field,
+ * with a slot per record in file order. FormChangeRecord objects are only
+ * created when they're asked for.
+ */
 public class FormChangeRecordTable implements Iterable<FormChangeRecord> {
 
-  private final Map<FormIdIndex, FormChangeRecord> records;
-  
-  private FormChangeRecordTable(Map<FormIdIndex, FormChangeRecord> records) {
-    this.records = records;
+  /** The slot for each form id index below this is found in slotByIndex. */
+  private final int directIndexLimit;
+  /** Packed form id index -> slot, or -1. */
+  private final int[] slotByIndex;
+  /** Slots of the other form id indexes, e.g., created and default forms. */
+  private final IntIntHashMap slotByOtherIndex;
+
+  private final Fo3ByteSource source;
+
+  private final int count;
+  private final int[] positions;
+  private final int[] formIdIndexes;
+  private final int[] changeFlags;
+  private final byte[] formTypes;
+  private final byte[] versions;
+  private final int[] sizes;
+  private final int[] dataPositions;
+
+  /** Slot bitmaps by form type, null for types with no records. */
+  private final long[][] typeBitmaps;
+  /** Slot bitmaps by change flag bit, null for bits no record has. */
+  private final long[][] flagBitmaps;
+
+  private FormChangeRecordTable(Builder builder, Fo3ByteSource source) {
+    this.source = source;
+    this.count = builder.count;
+    this.positions = Arrays.copyOf(builder.positions, count);
+    this.formIdIndexes = Arrays.copyOf(builder.formIdIndexes, count);
+    this.changeFlags = Arrays.copyOf(builder.changeFlags, count);
+    this.formTypes = Arrays.copyOf(builder.formTypes, count);
+    this.versions = Arrays.copyOf(builder.versions, count);
+    this.sizes = Arrays.copyOf(builder.sizes, count);
+    this.dataPositions = Arrays.copyOf(builder.dataPositions, count);
+    this.typeBitmaps = trim(builder.typeBitmaps, count);
+    this.flagBitmaps = trim(builder.flagBitmaps, count);
+
+    // Indexes into the form id table are small and dense, so they get a
+    // plain array. It's capped in case a save has an unusually sparse table.
+    int maxIndex = -1;
+    for (int i = 0; i < count; i++) {
+      if (isTableIndex(formIdIndexes[i])) {
+        maxIndex = Math.max(maxIndex, formIdIndexes[i]);
+      }
+    }
+    this.directIndexLimit = Math.min(maxIndex + 1, 4 * count + 1024);
+    this.slotByIndex = new int[directIndexLimit];
+    Arrays.fill(slotByIndex, -1);
+    this.slotByOtherIndex = new IntIntHashMap(16, -1);
+  }
+
+  private static long[][] trim(long[][] bitmaps, int count) {
+    long[][] trimmed = new long[bitmaps.length][];
+    for (int i = 0; i < bitmaps.length; i++) {
+      if (bitmaps[i] != null) {
+        trimmed[i] = Arrays.copyOf(bitmaps[i], RecordSet.wordCount(count));
+      }
+    }
+    return trimmed;
+  }
+
+  /**
+   * Whether the packed form id index is an index into the form id table.
+   * See {@link FormIdTable#findFormIdByFormIdIndex(int)}.
+   */
+  private static boolean isTableIndex(int formIdIndex) {
+    return ((formIdIndex >> 22) & 0b11) == 0;
+  }
+
+  /**
+   * Maps the slot's form id index to the slot, and returns the slot that
+   * already had it, or -1.
+   */
+  private int putSlot(int slot) {
+    int formIdIndex = formIdIndexes[slot];
+    if (formIdIndex >= 0 && formIdIndex < directIndexLimit) {
+      int previous = slotByIndex[formIdIndex];
+      if (previous == -1) {
+        slotByIndex[formIdIndex] = slot;
+      }
+      return previous;
+    }
+    return slotByOtherIndex.putIfAbsent(formIdIndex, slot);
+  }
+
+  /**
+   * The number of records.
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * The slot of the record for the given packed form id index, or -1.
+   */
+  public int findSlot(int formIdIndex) {
+    if (formIdIndex >= 0 && formIdIndex < directIndexLimit) {
+      return slotByIndex[formIdIndex];
+    }
+    return slotByOtherIndex.get(formIdIndex);
   }
 
   public FormChangeRecord get(FormIdIndex formIdIndex) {
-    return records.get(formIdIndex);
+    return get(formIdIndex.formIdIndex);
+  }
+
+  /**
+   * Gets the record for the given packed form id index, or null.
+   */
+  public FormChangeRecord get(int formIdIndex) {
+    int slot = findSlot(formIdIndex);
+    return slot == -1 ? null : getRecord(slot);
+  }
+
+  /**
+   * A new record object for the given slot.
+   */
+  public FormChangeRecord getRecord(int slot) {
+    return new FormChangeRecord(
+        positions[slot],
+        formIdIndexes[slot],
+        changeFlags[slot],
+        formTypes[slot],
+        versions[slot],
+        sizes[slot],
+        dataPositions[slot],
+        source);
+  }
+
+  /*
+   * Queries. The bitmaps are built while the headers are walked, so these
+   * don't look at the records. Combine the results with RecordSet.and()
+   * and or().
+   */
+
+  /**
+   * Every record.
+   */
+  public RecordSet all() {
+    return RecordSet.all(count);
+  }
+
+  /**
+   * The records of the given form type, see {@link FormChangeRecord#formType}.
+   */
+  public RecordSet ofFormType(int formType) {
+    if (formType < 0 || formType >= typeBitmaps.length || typeBitmaps[formType] == null) {
+      return RecordSet.empty(count);
+    }
+    return new RecordSet(typeBitmaps[formType], count);
+  }
+
+  /**
+   * The records that have all of the given change flags, e.g.,
+   * {@link FormChangeRecord#FLAG_INVENTORY}.
+   */
+  public RecordSet withChangeFlags(int flags) {
+    RecordSet result = all();
+    for (int f = flags; f != 0; f &= f - 1) {
+      result = result.and(withFlagBit(Integer.numberOfTrailingZeros(f)));
+    }
+    return result;
+  }
+
+  /**
+   * The records that have any of the given change flags.
+   */
+  public RecordSet withAnyChangeFlag(int flags) {
+    RecordSet result = RecordSet.empty(count);
+    for (int f = flags; f != 0; f &= f - 1) {
+      result = result.or(withFlagBit(Integer.numberOfTrailingZeros(f)));
+    }
+    return result;
+  }
+
+  /**
+   * The records for the given packed form id indexes. Indexes that have no
+   * record are left out.
+   */
+  public RecordSet withFormIdIndexes(int... formIdIndexes) {
+    long[] words = new long[RecordSet.wordCount(count)];
+    for (int formIdIndex : formIdIndexes) {
+      int slot = findSlot(formIdIndex);
+      if (slot != -1) {
+        words[slot >>> 6] |= 1L << slot;
+      }
+    }
+    return new RecordSet(words, count);
+  }
+
+  private RecordSet withFlagBit(int bit) {
+    long[] bitmap = flagBitmaps[bit];
+    return bitmap == null ? RecordSet.empty(count) : new RecordSet(bitmap, count);
+  }
+
+  /*
+   * Columns, by slot. Slots are in file order.
+   */
+
+  public int getPosition(int slot) {
+    return positions[slot];
+  }
+
+  public int getFormIdIndex(int slot) {
+    return formIdIndexes[slot];
+  }
+
+  public int getChangeFlags(int slot) {
+    return changeFlags[slot];
+  }
+
+  public byte getFormType(int slot) {
+    return formTypes[slot];
+  }
+
+  public byte getVersion(int slot) {
+    return versions[slot];
+  }
+
+  public int getSize(int slot) {
+    return sizes[slot];
+  }
+
+  public int getDataPosition(int slot) {
+    return dataPositions[slot];
+  }
+
+  /**
+   * Decodes the body of every record in parallel on the common fork/join
+   * pool. See {@link #decodeAll(FormChangeRecordDecoder, ForkJoinPool)}.
+   */
+  public <T> List<T> decodeAll(FormChangeRecordDecoder<T> decoder) throws LoadException {
+    return decodeAll(decoder, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Decodes the body of every record the decoder accepts, splitting the
+   * records across the pool's threads. The headers were already walked
+   * when the table was built, so each record can be decoded on its own.
+   *
+   * @return the non-null results in file order, whatever order the records
+   *     were decoded in
+   * @throws LoadException the failure of the first record in file order
+   *     that failed
+   */
+  public <T> List<T> decodeAll(FormChangeRecordDecoder<T> decoder, ForkJoinPool pool)
+      throws LoadException {
+    return decodeAll(null, decoder, pool);
+  }
+
+  /**
+   * Decodes only the records in the given set, e.g., from
+   * {@link #withChangeFlags(int)}. See
+   * {@link #decodeAll(FormChangeRecordDecoder, ForkJoinPool)}.
+   *
+   * @param records the records to decode, or null for all of them
+   */
+  public <T> List<T> decodeAll(RecordSet records, FormChangeRecordDecoder<T> decoder,
+      ForkJoinPool pool) throws LoadException {
+
+    Object[] results = new Object[count];
+    DecodeTask<T> task = new DecodeTask<>(records, decoder, results, new Failure(), 0, count);
+    pool.invoke(task);
+
+    if (task.failure.exception != null) {
+      throw task.failure.exception;
+    }
+
+    List<T> decoded = new ArrayList<>();
+    for (Object result : results) {
+      if (result != null) {
+        @SuppressWarnings("unchecked")
+        T t = (T) result;
+        decoded.add(t);
+      }
+    }
+    return decoded;
+  }
+
+  /**
+   * The failure with the lowest slot, so the same failure is reported
+   * however the work was split.
+   */
+  private static class Failure {
+
+    // Written under the lock, read without it by every task for every
+    // record.
+    private volatile int slot = Integer.MAX_VALUE;
+    private LoadException exception;
+
+    synchronized void report(int slot, LoadException exception) {
+      if (slot < this.slot) {
+        this.slot = slot;
+        this.exception = exception;
+      }
+    }
+
+    int slot() {
+      return slot;
+    }
+  }
+
+  private class DecodeTask<T> extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Records per leaf task. Most record bodies are a few dozen bytes. */
+    private static final int THRESHOLD = 256;
+
+    /** May be null */
+    private final RecordSet records;
+    private final FormChangeRecordDecoder<T> decoder;
+    private final Object[] results;
+    private final Failure failure;
+    private final int start;
+    private final int end;
+
+    DecodeTask(RecordSet records, FormChangeRecordDecoder<T> decoder, Object[] results,
+        Failure failure, int start, int end) {
+      this.records = records;
+      this.decoder = decoder;
+      this.results = results;
+      this.failure = failure;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start > THRESHOLD) {
+        int middle = (start + end) >>> 1;
+        invokeAll(
+            new DecodeTask<>(records, decoder, results, failure, start, middle),
+            new DecodeTask<>(records, decoder, results, failure, middle, end));
+        return;
+      }
+
+      for (int slot = first(start); slot != -1 && slot < end; slot = next(slot)) {
+        if (failure.slot() < slot) {
+          // An earlier record failed, the rest of this range doesn't matter.
+          return;
+        }
+        if (!decoder.accepts(formTypes[slot])) {
+          continue;
+        }
+        try {
+          results[slot] = decoder.decode(getRecord(slot));
+        } catch (LoadException e) {
+          failure.report(slot, e);
+          return;
+        } catch (RuntimeException e) {
+          // e.g., a BufferUnderflowException from a record that's shorter
+          // than the decoder expects.
+          LoadException loadException = new LoadException(
+              "Could not decode form change record at 0x%08X: %s", positions[slot], e);
+          loadException.initCause(e);
+          failure.report(slot, loadException);
+          return;
+        }
+      }
+    }
+
+    /** The first slot to decode at or after the given one, or -1. */
+    private int first(int slot) {
+      return records == null ? slot : records.nextSlot(slot);
+    }
+
+    private int next(int slot) {
+      return first(slot + 1);
+    }
   }
-  
+
   static FormChangeRecordTable load(Fo3ByteBuffer data, FileLocations fileLocations)
       throws LoadException {
 
-    Map<FormIdIndex, FormChangeRecord> formChangeRecords = new HashMap<>();
+    Builder builder = new Builder(fileLocations);
+    builder.walkToEnd(data);
+    return builder.build(data);
+  }
 
-    data.position(fileLocations.formChangeRecordsTableAddress);
+  /**
+   * Walks the record headers one at a time, skipping over the record data.
+   * The walk can be resumed when more of the file is available, see
+   * {@link IncrementalSaveLoader}.
+   */
+  static class Builder {
 
-    for (int i = 0; i < fileLocations.formChangeRecordsCount; i++) {
+    /** Form id index, change flags, type and version, and a 1 byte size. */
+    private static final int MIN_HEADER_SIZE = 3 + 4 + 1 + 1 + 1;
+
+    private final FileLocations fileLocations;
+
+    /** Where walkTo() and walkToEnd() resume from. */
+    private int walkPosition;
+    /** Form id index -> slot of the records walked so far, for walkTo(). */
+    private IntIntHashMap walkedSlots;
+
+    private int count;
+    private int[] positions;
+    private int[] formIdIndexes;
+    private int[] changeFlags;
+    private byte[] formTypes;
+    private byte[] versions;
+    private int[] sizes;
+    private int[] dataPositions;
+
+    /** Form type (6 bits) -> bitmap of slots, created when first needed. */
+    private final long[][] typeBitmaps = new long[64][];
+    /** Change flag bit -> bitmap of slots, created when first needed. */
+    private final long[][] flagBitmaps = new long[32][];
+
+    Builder(FileLocations fileLocations) {
+      this.fileLocations = fileLocations;
+      this.walkPosition = fileLocations.formChangeRecordsTableAddress;
+      int capacity = Math.max(16, Math.min(fileLocations.formChangeRecordsCount, 1 << 16));
+      positions = new int[capacity];
+      formIdIndexes = new int[capacity];
+      changeFlags = new int[capacity];
+      formTypes = new byte[capacity];
+      versions = new byte[capacity];
+      sizes = new int[capacity];
+      dataPositions = new int[capacity];
+    }
+
+    boolean isComplete() {
+      return count == fileLocations.formChangeRecordsCount;
+    }
+
+    /**
+     * Reads the record header at data's position and skips over the
+     * record's data. If the record isn't entirely in data, returns false
+     * and leaves the position where it was.
+     */
+    boolean readNext(Fo3ByteBuffer data) throws LoadException {
 
       int position = data.position();
+      if (data.remainingBytes() < MIN_HEADER_SIZE) {
+        return false;
+      }
 
-      FormIdIndex formIdIndex = data.readFormIdIndex(false);
+      int formIdIndex = data.readPackedFormIdIndex(false);
       int changeFlags = data.readInt(false);
       byte formTypeAndDataSize = data.readByte(false);
       byte version = data.readByte(false);
@@ -39,38 +465,195 @@ public class FormChangeRecordTable implements Iterable<FormChangeRecord> {
       // bytes are in the size field.
       // 0b00 = 1 byte, 0b01 = 2 bytes, 0b10 = 4 bytes
       int numSizeBytes = 1 << (0b11 & (formTypeAndDataSize >> 6)); 
+      if (data.remainingBytes() < numSizeBytes) {
+        data.position(position);
+        return false;
+      }
       int size = data.readNumber(numSizeBytes);
 
       byte formType = (byte) (formTypeAndDataSize & 0b0011_1111);
 
       int dataPosition = data.position();
 
-      FormChangeRecord formChangeRecord = new FormChangeRecord(
-          position,
-          formIdIndex,
-          changeFlags,
-          formType,
-          version,
-          size,
-          dataPosition,
-          data);
+      if (size < 0) {
+        throw new LoadException(
+            "Form change record at 0x%08X has a negative size: %d", position, size);
+      }
+      if (size > data.remainingBytes()) {
+        data.position(position);
+        return false;
+      }
+
+      if (count == positions.length) {
+        grow();
+      }
+      positions[count] = position;
+      formIdIndexes[count] = formIdIndex;
+      this.changeFlags[count] = changeFlags;
+      formTypes[count] = formType;
+      versions[count] = version;
+      sizes[count] = size;
+      dataPositions[count] = dataPosition;
+      setBit(typeBitmaps, formType, count);
+      for (int f = changeFlags; f != 0; f &= f - 1) {
+        setBit(flagBitmaps, Integer.numberOfTrailingZeros(f), count);
+      }
+      count++;
+
+      data.skipBytes(size);
+      return true;
+    }
+
+    /**
+     * Walks the headers of a complete file from where the last walk
+     * stopped, until the record for the given packed form id index is
+     * found. Like the built table, the first record for an index wins.
+     *
+     * @return the record's slot, or -1 if there isn't one
+     */
+    int walkTo(Fo3ByteBuffer data, int formIdIndex) throws LoadException {
+
+      if (walkedSlots == null) {
+        walkedSlots = new IntIntHashMap(64, -1);
+      }
+      int slot = walkedSlots.get(formIdIndex);
+      if (slot != -1) {
+        return slot;
+      }
+
+      data.position(walkPosition);
+      while (!isComplete()) {
+        readNextOrThrow(data);
+        int walked = count - 1;
+        if (walkedSlots.putIfAbsent(formIdIndexes[walked], walked) == -1
+            && formIdIndexes[walked] == formIdIndex) {
+          walkPosition = data.position();
+          return walked;
+        }
+      }
+      walkPosition = data.position();
+      return -1;
+    }
+
+    /**
+     * Walks the rest of the headers of a complete file.
+     */
+    void walkToEnd(Fo3ByteBuffer data) throws LoadException {
+      data.position(walkPosition);
+      while (!isComplete()) {
+        readNextOrThrow(data);
+      }
+      walkPosition = data.position();
+      walkedSlots = null;
+    }
+
+    private void readNextOrThrow(Fo3ByteBuffer data) throws LoadException {
+      if (!readNext(data)) {
+        throw new LoadException(
+            "Form change record %d at 0x%08X is cut off by the end of the file",
+            count, data.position());
+      }
+    }
 
-      FormChangeRecord prev = formChangeRecords.put(formIdIndex, formChangeRecord);
+    /**
+     * A record that has been walked, checked against the end of the table
+     * like {@link #build(Fo3ByteBuffer)} does.
+     */
+    FormChangeRecord getRecord(int slot, Fo3ByteBuffer data) throws LoadException {
+      checkBounds(slot, fileLocations.formChangeRecordsTableEnd(data.numBytes()));
+      return new FormChangeRecord(
+          positions[slot],
+          formIdIndexes[slot],
+          changeFlags[slot],
+          formTypes[slot],
+          versions[slot],
+          sizes[slot],
+          dataPositions[slot],
+          data.getSource());
+    }
 
-      if (prev != null) {
+    private void checkBounds(int slot, int tableEnd) throws LoadException {
+      if (dataPositions[slot] + sizes[slot] > tableEnd) {
         throw new LoadException(
-            "Conflicting form change records:\nprevious: %s\nconflict: %s",
-            prev, formChangeRecord);
+            "Form change record at 0x%08X with size 0x%08X runs past the end of the table at 0x%08X",
+            positions[slot], sizes[slot], tableEnd);
       }
-      
-      data.skipBytes(size);
     }
 
-    return new FormChangeRecordTable(Collections.unmodifiableMap(formChangeRecords));
+    private void setBit(long[][] bitmaps, int bitmap, int slot) {
+      if (bitmaps[bitmap] == null) {
+        bitmaps[bitmap] = new long[RecordSet.wordCount(positions.length)];
+      }
+      bitmaps[bitmap][slot >>> 6] |= 1L << slot;
+    }
+
+    private void grow() {
+      int capacity = positions.length * 2;
+      growBitmaps(typeBitmaps, capacity);
+      growBitmaps(flagBitmaps, capacity);
+      positions = Arrays.copyOf(positions, capacity);
+      formIdIndexes = Arrays.copyOf(formIdIndexes, capacity);
+      changeFlags = Arrays.copyOf(changeFlags, capacity);
+      formTypes = Arrays.copyOf(formTypes, capacity);
+      versions = Arrays.copyOf(versions, capacity);
+      sizes = Arrays.copyOf(sizes, capacity);
+      dataPositions = Arrays.copyOf(dataPositions, capacity);
+    }
+
+    private static void growBitmaps(long[][] bitmaps, int capacity) {
+      for (int i = 0; i < bitmaps.length; i++) {
+        if (bitmaps[i] != null) {
+          bitmaps[i] = Arrays.copyOf(bitmaps[i], RecordSet.wordCount(capacity));
+        }
+      }
+    }
+
+    /**
+     * Builds the table over the given data, which must hold the whole file.
+     */
+    FormChangeRecordTable build(Fo3ByteBuffer data) throws LoadException {
+
+      // This is the only check that the records are where they say they
+      // are: in trusted mode nothing else looks at the framing.
+      int tableEnd = fileLocations.formChangeRecordsTableEnd(data.numBytes());
+
+      FormChangeRecordTable table = new FormChangeRecordTable(this, data.getSource());
+
+      for (int i = 0; i < count; i++) {
+
+        checkBounds(i, tableEnd);
+
+        int previous = table.putSlot(i);
+
+        if (previous != -1) {
+          throw new LoadException(
+              "Conflicting form change records:\nprevious: %s\nconflict: %s",
+              table.getRecord(previous), table.getRecord(i));
+        }
+      }
+
+      return table;
+    }
   }
 
   @Override
   public Iterator<FormChangeRecord> iterator() {
-    return records.values().iterator();
+    return new Iterator<FormChangeRecord>() {
+
+      private int slot;
+
+      @Override
+      public boolean hasNext() {
+        return slot < count;
+      }
+
+      @Override
+      public FormChangeRecord next() {
+        if (slot >= count) {
+          throw new NoSuchElementException();
+        }
+        return getRecord(slot++);
+      }
+    };
   }
 }
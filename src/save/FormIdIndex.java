@@ -2,12 +2,29 @@ package save;
 
 public class FormIdIndex {
 
+  /** Packed form id index value meaning "no form id index". */
+  public static final int NONE = -1;
+
   final int formIdIndex;
 
   public FormIdIndex(int formIdIndex) {
     this.formIdIndex = formIdIndex;
   }
 
+  /**
+   * Returns a FormIdIndex for the given packed value, or null if it is NONE.
+   */
+  public static FormIdIndex of(int formIdIndex) {
+    return formIdIndex == NONE ? null : new FormIdIndex(formIdIndex);
+  }
+
+  /**
+   * The packed 24-bit value as it appears in the save file.
+   */
+  public int getPacked() {
+    return formIdIndex;
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
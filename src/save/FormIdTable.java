@@ -1,48 +1,94 @@
 package save;
 
+import save.SaveFile.LoadException;
 
 public class FormIdTable {
 
   private final int formIdTableSize;
   private final int[] formIdTable;
 
+  /** Form id -> packed form id index, built on the first reverse lookup. */
+  private volatile IntIntHashMap formIdIndexesByFormId;
+
   private FormIdTable(int formIdTableSize, int[] formIdTable) {
     this.formIdTableSize = formIdTableSize;
     this.formIdTable = formIdTable;
   }
 
   /**
-   * Form id -> form id index or -1 if not in the table.
+   * Form id -> form id index or null if not in the table.
    */
   public FormIdIndex findFormIdIndexByFormId(int formId) {
+    return FormIdIndex.of(findPackedFormIdIndexByFormId(formId));
+  }
+
+  /**
+   * Form id -> packed form id index or FormIdIndex.NONE if not in the table.
+   */
+  public int findPackedFormIdIndexByFormId(int formId) {
+    IntIntHashMap index = formIdIndexesByFormId;
+    if (index == null) {
+      // Threads that race here each build the same index, which is fine.
+      index = buildReverseIndex();
+      formIdIndexesByFormId = index;
+    }
+    return index.get(formId);
+  }
+
+  private IntIntHashMap buildReverseIndex() {
+    IntIntHashMap index = new IntIntHashMap(formIdTable.length, FormIdIndex.NONE);
     for (int i = 0; i < formIdTable.length; i++) {
-      if (formIdTable[i] == formId) {
-        return new FormIdIndex(i);
-      }
+      // Like a scan of the table, the first index of a form id wins.
+      index.putIfAbsent(formIdTable[i], i);
     }
-    return null;
+    return index;
   }
 
   /**
    * Form id index -> form id, or -1 if not in the table.
    */
   public int findFormIdByFormIdIndex(FormIdIndex formIdIndex) {
+    return findFormIdByFormIdIndex(formIdIndex.formIdIndex);
+  }
+
+  /**
+   * Packed form id index -> form id, or -1 if not in the table.
+   */
+  public int findFormIdByFormIdIndex(int formIdIndex) {
 
     // Upper 2 bits indicate the type of formID.
     // See http://www.uesp.net/wiki/Tes5Mod:Save_File_Format#FormID
-    if (((formIdIndex.formIdIndex >> 22) & 0b11) == 0) {
-      return formIdTable[formIdIndex.formIdIndex];
+    if (((formIdIndex >> 22) & 0b11) == 0) {
+      return formIdTable[formIdIndex];
     } else {
       // Not in the form id table, it's either default or created.
       return -1;
     }
   }
 
-  static FormIdTable load(Fo3ByteBuffer data, FileLocations fileLocations) {
+  /**
+   * Resolves the first count packed form id indexes into formIds, with -1
+   * for indexes that aren't in the table, like
+   * {@link #findFormIdByFormIdIndex(int)}.
+   */
+  public void findFormIdsByFormIdIndexes(int[] formIdIndexes, int[] formIds, int count) {
+    int[] formIdTable = this.formIdTable;
+    for (int i = 0; i < count; i++) {
+      int formIdIndex = formIdIndexes[i];
+      formIds[i] = ((formIdIndex >> 22) & 0b11) == 0 ? formIdTable[formIdIndex] : -1;
+    }
+  }
+
+  static FormIdTable load(Fo3ByteBuffer data, FileLocations fileLocations)
+      throws LoadException {
 
     data.position(fileLocations.formIdTableAddress);
 
     int formIdTableSize = data.readInt(false);
+    if (formIdTableSize < 0 || formIdTableSize > data.remainingBytes() / 4) {
+      throw new LoadException("Bad form id table size at 0x%08X: %d",
+          fileLocations.formIdTableAddress, formIdTableSize);
+    }
 
     // Apparently all the form indexes in the save file are off by one?
     int[] formIdTable = new int[formIdTableSize + 1];
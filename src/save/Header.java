@@ -1,5 +1,7 @@
 package save;
 
+import save.SaveFile.LoadException;
+
 public class Header {
 
   public final String magic;
@@ -9,14 +11,15 @@ public class Header {
   public final int screenshotHeight;
   public final int saveIndex;
   public final String name;
-  public final String karma;
+  /** Never displayed, so it's only decoded if it's used. */
+  public final CharSequence karma;
   public final int level;
   public final String location;
   public final String playtime;
 
   private Header(String magic, int headerSize, int maybeVersion, int screenshotWidth,
-      int screenshotHeight, int saveIndex, String name, String karma, int level, String location,
-      String playtime) {
+      int screenshotHeight, int saveIndex, String name, CharSequence karma, int level,
+      String location, String playtime) {
     this.magic = magic;
     this.headerSize = headerSize;
     this.maybeVersion = maybeVersion;
@@ -30,18 +33,20 @@ public class Header {
     this.playtime = playtime;
   }
   
-  static Header load(Fo3ByteBuffer data) {
+  static Header load(Fo3ByteBuffer data) throws LoadException {
 
     // See http://falloutmods.wikia.com/wiki/FOS_file_format
 
     String magic = data.readString(11, false);
     int headerSize = data.readInt(false);
+    // 4 ints, each followed by a pipe.
+    data.checkPipes(4, 4);
     int maybeVersion = data.readInt();
     int screenshotWidth = data.readInt();
     int screenshotHeight = data.readInt();
     int saveIndex = data.readInt();
     String name = data.readBString();
-    String karma = data.readBString();
+    CharSequence karma = data.readLazyBString();
     int level = data.readInt();
     String location = data.readBString();
     String playtime = data.readBString();
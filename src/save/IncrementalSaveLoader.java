@@ -0,0 +1,289 @@
+package save;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.util.List;
+
+import save.Fo3ByteBuffer.Validation;
+import save.SaveFile.LoadException;
+
+/**
+ * Loads a save file while the game is still writing it. Each call to
+ * {@link #update(SeekableByteChannel)} reads the bytes that have been written
+ * since the last call and parses as many sections as those bytes allow,
+ * picking up where the last call stopped instead of starting over.
+ *
+ * The game fills in the file location table after writing the sections it
+ * points to, so until it's filled in, the loader reads it again on each
+ * update.
+ */
+public class IncrementalSaveLoader {
+
+  private static final int INITIAL_CAPACITY = 256 * 1024;
+
+  private enum Stage {
+    HEADER,
+    SCREENSHOT,
+    PLUGINS,
+    FILE_LOCATIONS,
+    MISC_STATS,
+    FORM_CHANGE_RECORDS,
+    FORM_ID_TABLE,
+    DONE
+  }
+
+  private final File file;
+  private final Validation validation;
+  /** May be null */
+  private final BufferPool pool;
+
+  private ByteBuffer bytes;
+  private int received;
+
+  private Stage stage = Stage.HEADER;
+  /** Where the current stage starts, or resumes for the form change records. */
+  private int stagePosition;
+
+  private Header header;
+  private int screenshotPosition;
+  private List<String> plugins;
+  private FileLocations fileLocations;
+  private MiscStats miscStats;
+  private FormChangeRecordTable.Builder formChangeRecords;
+  private FormIdTable formIdTable;
+  private SaveFile saveFile;
+
+  public IncrementalSaveLoader(File file, Validation validation) {
+    this(file, validation, null);
+  }
+
+  /**
+   * Loads into buffers from the given pool. The finished save owns its
+   * buffer, see {@link SaveFile#release()}. A load that's abandoned before
+   * it finishes should be released with {@link #release()}.
+   */
+  public IncrementalSaveLoader(File file, Validation validation, BufferPool pool) {
+    this.file = file;
+    this.validation = validation;
+    this.pool = pool;
+    this.bytes = allocate(INITIAL_CAPACITY);
+  }
+
+  private ByteBuffer allocate(int capacity) {
+    ByteBuffer buffer = pool == null ? ByteBuffer.allocate(capacity) : pool.acquire(capacity);
+    buffer.limit(buffer.capacity());
+    return buffer.order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Gives the buffer back to the pool if the save isn't complete. A complete
+   * save is released with {@link SaveFile#release()} instead.
+   */
+  public void release() {
+    if (!isComplete() && pool != null && bytes != null) {
+      pool.release(bytes);
+      bytes = null;
+    }
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * The number of bytes read so far, and kept. The next update reads from
+   * here.
+   */
+  public int bytesReceived() {
+    return received;
+  }
+
+  public boolean isComplete() {
+    return stage == Stage.DONE;
+  }
+
+  /**
+   * The loaded save, or null if it's not complete yet.
+   */
+  public SaveFile getSaveFile() {
+    return saveFile;
+  }
+
+  /**
+   * Reads everything that's currently available from the channel, from
+   * {@link #bytesReceived()} on, and parses as much of the save as possible.
+   *
+   * @return whether the save is now completely loaded
+   */
+  public boolean update(SeekableByteChannel channel) throws IOException, LoadException {
+
+    if (isComplete()) {
+      return true;
+    }
+
+    if (bytes == null) {
+      throw new IllegalStateException("Loader for " + file + " was released");
+    }
+
+    channel.position(received);
+    while (true) {
+      if (received == bytes.capacity()) {
+        ByteBuffer grown = allocate(bytes.capacity() * 2);
+        bytes.clear().limit(received);
+        grown.put(bytes);
+        if (pool != null) {
+          pool.release(bytes);
+        }
+        bytes = grown;
+      }
+      bytes.clear().position(received);
+      int read = channel.read(bytes);
+      if (read <= 0) {
+        break;
+      }
+      received += read;
+    }
+
+    Fo3ByteBuffer data = new Fo3ByteBuffer(file, view(), validation);
+
+    while (!isComplete() && stagePosition <= received) {
+      data.position(stagePosition);
+      try {
+        if (!parseStage(data)) {
+          break;
+        }
+      } catch (BufferUnderflowException e) {
+        // This stage isn't all there yet, try it again on the next update.
+        break;
+      }
+    }
+
+    return isComplete();
+  }
+
+  /**
+   * Parses the current stage starting at data's position. Returns false if
+   * there isn't enough data yet.
+   */
+  private boolean parseStage(Fo3ByteBuffer data) throws LoadException {
+
+    switch (stage) {
+
+    case HEADER: {
+      if (received < SaveFile.HEADER_PREFIX_SIZE) {
+        return false;
+      }
+      int headerSize = bytes.getInt(11);
+      if (headerSize < 0 || headerSize > SaveFile.MAX_HEADER_SIZE) {
+        throw new LoadException("Bad header size in %s: %d", file, headerSize);
+      }
+      if (received < SaveFile.HEADER_PREFIX_SIZE + headerSize) {
+        return false;
+      }
+      header = Header.load(data);
+      screenshotPosition = data.position();
+      return nextStage(Stage.SCREENSHOT, data.position());
+    }
+
+    case SCREENSHOT: {
+      int screenshotSize = header.screenshotHeight * header.screenshotWidth * 3;
+      if (data.remainingBytes() < screenshotSize) {
+        return false;
+      }
+      SaveFile.loadScreenshot(data, header);
+      return nextStage(Stage.PLUGINS, data.position());
+    }
+
+    case PLUGINS:
+      plugins = SaveFile.loadPlugins(data);
+      return nextStage(Stage.FILE_LOCATIONS, data.position());
+
+    case FILE_LOCATIONS: {
+      if (data.remainingBytes() < FileLocations.SIZE) {
+        return false;
+      }
+      FileLocations fileLocations = FileLocations.load(data);
+      if (!fileLocations.isWritten(data.position())) {
+        // The game hasn't filled in the table yet. Drop what was read of it,
+        // so the next update reads it again instead of only what's after
+        // it.
+        received = stagePosition;
+        return false;
+      }
+      this.fileLocations = fileLocations;
+      return nextStage(Stage.MISC_STATS, fileLocations.globalDataTable1Address);
+    }
+
+    case MISC_STATS:
+      if (received < fileLocations.globalDataTable1Address + MiscStats.SIZE) {
+        return false;
+      }
+      miscStats = MiscStats.load(data, fileLocations);
+      formChangeRecords = new FormChangeRecordTable.Builder(fileLocations);
+      return nextStage(Stage.FORM_CHANGE_RECORDS, fileLocations.formChangeRecordsTableAddress);
+
+    case FORM_CHANGE_RECORDS:
+      while (!formChangeRecords.isComplete()) {
+        if (!formChangeRecords.readNext(data)) {
+          // Resume from the first record that isn't all there.
+          stagePosition = data.position();
+          return false;
+        }
+      }
+      return nextStage(Stage.FORM_ID_TABLE, fileLocations.formIdTableAddress);
+
+    case FORM_ID_TABLE: {
+      if (data.remainingBytes() < 4) {
+        return false;
+      }
+      int formIdTableSize = data.readInt(false);
+      if (formIdTableSize >= 0 && data.remainingBytes() < formIdTableSize * 4L) {
+        return false;
+      }
+      formIdTable = FormIdTable.load(data, fileLocations);
+      complete();
+      return true;
+    }
+
+    default:
+      throw new IllegalStateException(stage.toString());
+    }
+  }
+
+  private boolean nextStage(Stage next, int position) {
+    stage = next;
+    stagePosition = position;
+    return true;
+  }
+
+  /**
+   * The bytes received so far.
+   */
+  private ByteBuffer view() {
+    ByteBuffer view = bytes.duplicate();
+    view.clear().limit(received);
+    return view;
+  }
+
+  private void complete() throws LoadException {
+    // The save takes over the buffer, and gives it back to the pool.
+    Fo3ByteBuffer data = new Fo3ByteBuffer(file, view(), validation, pool);
+    fileLocations.checkBounds(data.numBytes());
+    saveFile = new SaveFile(
+        data,
+        file,
+        header,
+        screenshotPosition,
+        plugins,
+        fileLocations,
+        miscStats,
+        formChangeRecords.build(data),
+        formIdTable);
+    formChangeRecords = null;
+    stage = Stage.DONE;
+  }
+}
@@ -0,0 +1,162 @@
+package save;
+
+/**
+ * An int to int hash map that doesn't box its keys or values. Open
+ * addressing with linear probing; keys can't be removed.
+ */
+public final class IntIntHashMap {
+
+  /** Marks an empty slot. The key 0 itself is kept outside the table. */
+  private static final int FREE_KEY = 0;
+
+  private final int missingValue;
+
+  private int[] keys;
+  private int[] values;
+  private int mask;
+  private int size;
+
+  private boolean hasFreeKey;
+  private int freeKeyValue;
+
+  /**
+   * @param expectedSize how many keys to make room for up front
+   * @param missingValue what {@link #get(int)} returns for keys not in the map
+   */
+  public IntIntHashMap(int expectedSize, int missingValue) {
+    this.missingValue = missingValue;
+    // Keep the table at most half full so probe sequences stay short.
+    int capacity = Integer.highestOneBit(Math.max(8, expectedSize) * 2 - 1) << 1;
+    allocate(capacity);
+  }
+
+  private void allocate(int capacity) {
+    keys = new int[capacity];
+    values = new int[capacity];
+    mask = capacity - 1;
+  }
+
+  private static int hash(int key) {
+    int h = key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * The value for the key, or the map's missing value.
+   */
+  public int get(int key) {
+    if (key == FREE_KEY) {
+      return hasFreeKey ? freeKeyValue : missingValue;
+    }
+    int[] keys = this.keys;
+    for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+      int k = keys[i];
+      if (k == key) {
+        return values[i];
+      }
+      if (k == FREE_KEY) {
+        return missingValue;
+      }
+    }
+  }
+
+  public boolean containsKey(int key) {
+    if (key == FREE_KEY) {
+      return hasFreeKey;
+    }
+    for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+      int k = keys[i];
+      if (k == key) {
+        return true;
+      }
+      if (k == FREE_KEY) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Maps the key to the value.
+   *
+   * @return the previous value, or the map's missing value
+   */
+  public int put(int key, int value) {
+    return put(key, value, true);
+  }
+
+  /**
+   * Maps the key to the value unless the key is already in the map.
+   *
+   * @return the existing value, or the map's missing value if the key was added
+   */
+  public int putIfAbsent(int key, int value) {
+    return put(key, value, false);
+  }
+
+  private int put(int key, int value, boolean replace) {
+
+    if (key == FREE_KEY) {
+      if (hasFreeKey) {
+        int previous = freeKeyValue;
+        if (replace) {
+          freeKeyValue = value;
+        }
+        return previous;
+      }
+      hasFreeKey = true;
+      freeKeyValue = value;
+      size++;
+      return missingValue;
+    }
+
+    int i = hash(key) & mask;
+    while (true) {
+      int k = keys[i];
+      if (k == key) {
+        int previous = values[i];
+        if (replace) {
+          values[i] = value;
+        }
+        return previous;
+      }
+      if (k == FREE_KEY) {
+        break;
+      }
+      i = (i + 1) & mask;
+    }
+
+    keys[i] = key;
+    values[i] = value;
+    size++;
+    if (size * 2 > keys.length) {
+      rehash(keys.length * 2);
+    }
+    return missingValue;
+  }
+
+  private void rehash(int capacity) {
+    int[] oldKeys = keys;
+    int[] oldValues = values;
+    allocate(capacity);
+    for (int j = 0; j < oldKeys.length; j++) {
+      int key = oldKeys[j];
+      if (key != FREE_KEY) {
+        int i = hash(key) & mask;
+        while (keys[i] != FREE_KEY) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = oldValues[j];
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "IntIntHashMap(" + size + " keys in " + keys.length + " slots)";
+  }
+}
@@ -0,0 +1,138 @@
+package save;
+
+import static save.InventoryVisitor.TAG_CONDITION;
+import static save.InventoryVisitor.TAG_CONDITION_COUNT;
+import static save.InventoryVisitor.TAG_EQUIPPED;
+import static save.InventoryVisitor.TAG_HOTKEY;
+import static save.InventoryVisitor.TAG_OWNER;
+import static save.InventoryVisitor.TAG_SCRIPT;
+import static save.InventoryVisitor.TAG_UNKNOWN1;
+import static save.InventoryVisitor.TAG_UNKNOWN2;
+import static save.InventoryVisitor.TAG_UNKNOWN3;
+import save.SaveFile.LoadException;
+
+/**
+ * Decodes inventory records, see {@link InventoryVisitor}.
+ */
+public final class InventoryDecoder {
+
+  private InventoryDecoder() {
+  }
+
+  /**
+   * Decodes an inventory record from the given data into the visitor. The
+   * buffer must be positioned at the start of the inventory (i.e., the
+   * first byte of the inventory size varint).
+   */
+  public static void decode(Fo3ByteBuffer data, InventoryVisitor visitor) throws LoadException {
+
+    // The inventory record is almost the same as in TES4:
+    // http://www.uesp.net/wiki/Tes4Mod:Save_File_Format/Inventory
+    //
+    // Except the counts are variable-length integers. The bottom 2 bits of the first byte
+    // indicate how many bytes are in the number:
+    // 0b00 = 1 byte, 0b01 = 2 bytes, 0b10 = 4 bytes.
+
+    int inventoryCount = data.readUvarint();
+    if (inventoryCount > data.remainingBytes()) {
+      // Every entry takes more than a byte, so this can't be right, and
+      // visitors size their arrays by it.
+      throw new LoadException("Inventory at 0x%08X has too many entries: %d",
+          data.previousPosition(), inventoryCount);
+    }
+    visitor.onInventory(inventoryCount);
+
+    for (int i = 0; i < inventoryCount; i++) {
+
+      int formIdIndex = data.readPackedFormIdIndex();
+      int itemCount = data.readInt();
+      int itemInfoCount = data.readUvarint();
+
+      visitor.onEntry(i, formIdIndex, itemCount, itemInfoCount);
+
+      for (int j = 0; j < itemInfoCount; j++) {
+
+        int tagCount = data.readUvarint();
+        visitor.onItemInfo(tagCount);
+
+        for (int k = 0; k < tagCount; k++) {
+
+          byte tag = data.readByte();
+
+          switch (tag) {
+
+          case TAG_CONDITION:
+            visitor.onTag(tag, 0, data.readFloat());
+            break;
+
+          case TAG_CONDITION_COUNT:
+            visitor.onTag(tag, data.readShort(), 0);
+            break;
+
+          case TAG_EQUIPPED:
+          case TAG_UNKNOWN3:
+            visitor.onTag(tag, 0, 0);
+            break;
+
+          case TAG_HOTKEY:
+            visitor.onTag(tag, data.readByte(), 0);
+            break;
+
+          case TAG_OWNER:
+          case TAG_UNKNOWN1:
+            visitor.onTag(tag, data.readPackedFormIdIndex(), 0);
+            break;
+
+          case TAG_SCRIPT: {
+            int scriptFormIdIndex = data.readPackedFormIdIndex();
+
+            int variableCount = data.readUvarint();
+
+            for (int v = 0; v < variableCount; v++) {
+
+              // Unlike in TES4, where the variable index and variable type are stored
+              // in separate shorts, F03 appears to put them in one int. 
+              // See http://www.uesp.net/wiki/Tes4Mod:Save_File_Format/Properties
+
+              int variableIndexAndFlags = data.readInt();
+
+              // How many bits are in the flags?
+              int variableFlags = variableIndexAndFlags & 0xFF000000;
+
+              if (variableFlags == 0) {
+                // variable is a 64 bit float
+                data.readDouble();
+              } else if (variableFlags == 0x8000_0000) {
+                // variable is a form id index
+                data.readPackedFormIdIndex();
+              } else {
+                throw new LoadException(
+                    "Unknown variable flags in script at 0x%08X: index and flags: 0x%08X",
+                    data.previousPosition(), variableIndexAndFlags);
+              }
+            }
+
+            // Always zeros?
+            data.assertByte(0);
+            data.assertByte(0);
+
+            visitor.onTag(tag, scriptFormIdIndex, 0);
+          } break;
+
+          case TAG_UNKNOWN2:
+            visitor.onTag(tag, 0, data.readFloat());
+            break;
+
+          default:
+            throw new LoadException(
+                "Unknown inventory tag at 0x%08X: 0x%02X", data.previousPosition(), tag);
+          }
+        }
+      }
+
+      if (visitor.isDone()) {
+        return;
+      }
+    }
+  }
+}
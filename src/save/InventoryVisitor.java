@@ -0,0 +1,68 @@
+package save;
+
+/**
+ * Receives an inventory record as it's decoded by
+ * {@link InventoryDecoder#decode(Fo3ByteBuffer, InventoryVisitor)}, without
+ * anything being built in between. {@link RawInventory} and
+ * {@link CompactInventory} are built by visitors; a visitor that only wants
+ * a total or a single item doesn't have to build anything.
+ *
+ * The calls for an inventory are: onInventory, then for each entry onEntry,
+ * then for each of the entry's item infos onItemInfo, then for each of the
+ * item info's tags onTag.
+ */
+public interface InventoryVisitor {
+
+  /*
+   * Item info tags, and the onTag() value that holds their data.
+   */
+
+  /** floatValue: the condition */
+  byte TAG_CONDITION = 0x25;
+  /** intValue: how many items the item info is for */
+  byte TAG_CONDITION_COUNT = 0x24;
+  /** No data */
+  byte TAG_EQUIPPED = 0x16;
+  /** intValue: packed form id index of the owner */
+  byte TAG_OWNER = 0x21;
+  /** intValue: the hotkey */
+  byte TAG_HOTKEY = 0x4A;
+  /** intValue: packed form id index of the script. The variables are skipped. */
+  byte TAG_SCRIPT = 0x0D;
+
+  /** intValue: a packed form id index, there can be more than one */
+  byte TAG_UNKNOWN1 = 0x1C;
+  /** floatValue: some float, there can be more than one */
+  byte TAG_UNKNOWN2 = 0x30;
+  /** No data, appears with items that have a count of zero */
+  byte TAG_UNKNOWN3 = 0x3E;
+
+  default void onInventory(int entryCount) {
+  }
+
+  /**
+   * @param formIdIndex packed form id index, see {@link FormIdIndex}
+   */
+  void onEntry(int inventoryIndex, int formIdIndex, int count, int itemInfoCount);
+
+  /**
+   * Starts the next item info of the current entry.
+   */
+  default void onItemInfo(int tagCount) {
+  }
+
+  /**
+   * A tag of the current item info, with its data in intValue or
+   * floatValue depending on the tag.
+   */
+  default void onTag(byte tag, int intValue, float floatValue) {
+  }
+
+  /**
+   * Checked after each entry. Returning true stops the decoding, leaving
+   * the buffer in the middle of the inventory.
+   */
+  default boolean isDone() {
+    return false;
+  }
+}
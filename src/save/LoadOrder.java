@@ -0,0 +1,169 @@
+package save;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Maps the mod index in the top byte of a save's form ids to the plugin the
+ * form is from, so a form id can be turned into a key that means the same
+ * form in any save, whatever its load order.
+ *
+ * A key is a long with the plugin's id above the 24 bit object id. Plugin
+ * ids are given out per process by file name, ignoring case, so keys can be
+ * compared between saves loaded by the same process, but shouldn't be
+ * stored. Store {@link #keyToString(long)} instead.
+ */
+public final class LoadOrder {
+
+  /** The key of form ids that aren't from a plugin in the load order. */
+  public static final long NO_KEY = -1;
+
+  /**
+   * The mod index of forms that were created while playing, e.g., enchanted
+   * or crafted items. They only exist in the save, so they have no key.
+   */
+  public static final int CREATED_MOD_INDEX = 0xFF;
+
+  private static final int OBJECT_ID_BITS = 24;
+  private static final int OBJECT_ID_MASK = 0x00FF_FFFF;
+
+  // Guarded by PLUGIN_IDS.
+  private static final Map<String, Integer> PLUGIN_IDS = new HashMap<>();
+  private static final List<String> PLUGIN_NAMES = new ArrayList<>();
+
+  private final List<String> plugins;
+  /** Mod index -> plugin id */
+  private final int[] pluginIds;
+  /** Plugin id -> mod index */
+  private final IntIntHashMap modIndexes;
+
+  public LoadOrder(List<String> plugins) {
+    this.plugins = Collections.unmodifiableList(new ArrayList<>(plugins));
+    int count = Math.min(plugins.size(), CREATED_MOD_INDEX);
+    this.pluginIds = new int[count];
+    this.modIndexes = new IntIntHashMap(count, -1);
+    for (int modIndex = 0; modIndex < count; modIndex++) {
+      int pluginId = getPluginId(plugins.get(modIndex));
+      pluginIds[modIndex] = pluginId;
+      // If a plugin is listed twice the game uses the first.
+      modIndexes.putIfAbsent(pluginId, modIndex);
+    }
+  }
+
+  /**
+   * The id of the plugin with the given file name, the same for every load
+   * order in this process.
+   */
+  public static int getPluginId(String plugin) {
+    String name = plugin.toLowerCase(Locale.ROOT);
+    synchronized (PLUGIN_IDS) {
+      Integer pluginId = PLUGIN_IDS.get(name);
+      if (pluginId == null) {
+        pluginId = PLUGIN_NAMES.size();
+        PLUGIN_IDS.put(name, pluginId);
+        PLUGIN_NAMES.add(plugin);
+      }
+      return pluginId;
+    }
+  }
+
+  /**
+   * The file name of the plugin, as it was first seen.
+   */
+  public static String getPluginName(int pluginId) {
+    synchronized (PLUGIN_IDS) {
+      return PLUGIN_NAMES.get(pluginId);
+    }
+  }
+
+  public List<String> getPlugins() {
+    return plugins;
+  }
+
+  public int size() {
+    return pluginIds.length;
+  }
+
+  /** The id of the plugin at the mod index, or -1. */
+  public int getPluginIdByModIndex(int modIndex) {
+    return modIndex >= 0 && modIndex < pluginIds.length ? pluginIds[modIndex] : -1;
+  }
+
+  /**
+   * The key of the form id, or NO_KEY if its mod index isn't in the load
+   * order, which includes forms created while playing.
+   */
+  public long toKey(int formId) {
+    int modIndex = formId >>> OBJECT_ID_BITS;
+    if (modIndex >= pluginIds.length) {
+      return NO_KEY;
+    }
+    return key(pluginIds[modIndex], formId & OBJECT_ID_MASK);
+  }
+
+  /**
+   * The form id of the key in this load order, or -1 if its plugin isn't
+   * loaded.
+   */
+  public int toFormId(long key) {
+    if (key == NO_KEY) {
+      return -1;
+    }
+    int modIndex = modIndexes.get(getKeyPluginId(key));
+    if (modIndex == -1) {
+      return -1;
+    }
+    return (modIndex << OBJECT_ID_BITS) | getKeyObjectId(key);
+  }
+
+  public static long key(int pluginId, int objectId) {
+    return ((long) pluginId << OBJECT_ID_BITS) | (objectId & OBJECT_ID_MASK);
+  }
+
+  public static int getKeyPluginId(long key) {
+    return (int) (key >>> OBJECT_ID_BITS);
+  }
+
+  public static int getKeyObjectId(long key) {
+    return (int) key & OBJECT_ID_MASK;
+  }
+
+  /**
+   * e.g., "Fallout3.esm:00080A". Unlike the key this can be stored, see
+   * {@link #parseKey(String)}.
+   */
+  public static String keyToString(long key) {
+    if (key == NO_KEY) {
+      return "none";
+    }
+    return String.format("%s:%06X", getPluginName(getKeyPluginId(key)), getKeyObjectId(key));
+  }
+
+  /**
+   * The key of a string from {@link #keyToString(long)}, in this process.
+   *
+   * @throws IllegalArgumentException if it isn't a plugin name and a hex
+   *     object id
+   */
+  public static long parseKey(String s) {
+    // Plugin names can't have a colon in them on Windows.
+    int colon = s.lastIndexOf(':');
+    if (colon <= 0 || colon == s.length() - 1) {
+      throw new IllegalArgumentException("Not a plugin and object id: " + s);
+    }
+    int objectId = Integer.parseInt(s.substring(colon + 1), 16);
+    if ((objectId & ~OBJECT_ID_MASK) != 0) {
+      throw new IllegalArgumentException("Object id out of range: " + s);
+    }
+    return key(getPluginId(s.substring(0, colon)), objectId);
+  }
+
+  @Override
+  public String toString() {
+    return "LoadOrder" + plugins;
+  }
+}
@@ -4,6 +4,9 @@ import save.SaveFile.LoadException;
 
 public class MiscStats {
 
+  /** Size in bytes, from the start of global data table 1. */
+  static final int SIZE = 4 + 4 + 4 + 1 + 26 * (4 + 1);
+
   public final int questsCompleted;
   public final int locationsDiscovered;
   public final int peopleKilled;
@@ -98,6 +101,9 @@ public class MiscStats {
     data.assertInt(0x87, false); // size of struct
     data.assertInt(26, true); // number of stats
 
+    // 26 ints, each followed by a pipe.
+    data.checkPipes(4, 26);
+
     return new MiscStats(
         data.readInt(),
         data.readInt(),
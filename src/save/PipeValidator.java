@@ -0,0 +1,65 @@
+package save;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import save.SaveFile.LoadException;
+
+/**
+ * Checks the pipe separators of a run of fixed-size values in one pass,
+ * 8 bytes at a time, instead of one byte per read.
+ */
+class PipeValidator {
+
+  private static final byte PIPE = 0x7C;
+  private static final long PIPES = 0x7C7C_7C7C_7C7C_7C7CL;
+
+  /**
+   * Checks that each of the count values of valueSize bytes starting at
+   * start is followed by a pipe. Doesn't change the buffer's position.
+   */
+  static void checkStrided(ByteBuffer data, int start, int valueSize, int count)
+      throws LoadException {
+
+    int stride = valueSize + 1;
+    int end = start + stride * count;
+    if (end > data.limit()) {
+      throw new LoadException(
+          "Expected %d values of %d bytes at 0x%08X but the data ends at 0x%08X",
+          count, valueSize, start, data.limit());
+    }
+
+    // The pattern of pipes repeats every lcm(stride, 8) bytes, so precompute
+    // a mask of where the pipes are for each word in one period.
+    int periodWords = stride / gcd(stride, 8);
+    long[] masks = new long[periodWords];
+    for (int i = valueSize; i < periodWords * 8; i += stride) {
+      masks[i / 8] |= 0xFFL << (8 * (i % 8));
+    }
+
+    ByteBuffer words = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    int position = start;
+    int word = 0;
+    while (position + 8 <= end) {
+      long mask = masks[word];
+      if ((words.getLong(position) & mask) != (PIPES & mask)) {
+        // Let the byte at a time loop find and report the exact position.
+        break;
+      }
+      position += 8;
+      if (++word == periodWords) {
+        word = 0;
+      }
+    }
+
+    for (int i = position; i < end; i++) {
+      if ((i - start) % stride == valueSize && data.get(i) != PIPE) {
+        throw new LoadException("Expected pipe at 0x%08X but got 0x%02X", i, data.get(i));
+      }
+    }
+  }
+
+  private static int gcd(int a, int b) {
+    return b == 0 ? a : gcd(b, a % b);
+  }
+}
@@ -12,19 +12,23 @@ public class PlayerACHRFormChangeRecord extends FormChangeRecord {
   public final int experience;
   public final PlayerStats permanentStatChanges; 
   public final PlayerStats temporaryStatChanges;
+  /** Reads the save's bytes, see {@link ActorValues}. */
+  public final ActorValues actorValues;
   
   private PlayerACHRFormChangeRecord(
       FormChangeRecord formChangeRecord,
       RawInventory inventory,
       int experience,
       PlayerStats permanentStatChanges,
-      PlayerStats temporaryStatChanges) {
+      PlayerStats temporaryStatChanges,
+      ActorValues actorValues) {
 
     super(formChangeRecord);
     this.inventory = inventory;
     this.experience = experience;
     this.permanentStatChanges = permanentStatChanges;
     this.temporaryStatChanges = temporaryStatChanges;
+    this.actorValues = actorValues;
     
   }
 
@@ -38,8 +42,7 @@ public class PlayerACHRFormChangeRecord extends FormChangeRecord {
     // The variable length records appear to start at 0x0489 bytes
     // into the record.
 
-    Fo3ByteBuffer data = formChangeRecord.data;
-    data.position(formChangeRecord.dataPosition);
+    Fo3ByteBuffer data = formChangeRecord.getData();
 
     // Skip Moved struct
     data.skipBytes(28);
@@ -47,33 +50,14 @@ public class PlayerACHRFormChangeRecord extends FormChangeRecord {
     // Temporary attribute changes.
     // In TES4 this is 876 bytes, but in F03 it's
     // 220 floats or 1100 bytes (220 * (4 bytes + pipe char))
-    float[] temporaryAttributeChanges = new float[220];
-    for (int i = 0; i < 220; i++) {
-      // Fire resistance is the float at index 52.
-      temporaryAttributeChanges[i] = data.readFloat();
-    }
-
-    PlayerStats temporaryStatChanges = new PlayerStats(
-        (int) temporaryAttributeChanges[5],  // S
-        (int) temporaryAttributeChanges[6],  // P
-        (int) temporaryAttributeChanges[7],  // E
-        (int) temporaryAttributeChanges[8],  // C
-        (int) temporaryAttributeChanges[9],  // I
-        (int) temporaryAttributeChanges[10], // A
-        (int) temporaryAttributeChanges[11]  // L
-    );
-
-    PlayerStats permanentStatChanges = new PlayerStats(
-        (int) temporaryAttributeChanges[78], // S
-        (int) temporaryAttributeChanges[79], // P
-        (int) temporaryAttributeChanges[80], // E
-        (int) temporaryAttributeChanges[81], // C
-        (int) temporaryAttributeChanges[82], // I
-        (int) temporaryAttributeChanges[83], // A
-        (int) temporaryAttributeChanges[84]  // L
-    );
-    
-    int experience = (int) temporaryAttributeChanges[98];
+    data.checkPipes(4, ActorValues.COUNT);
+    ActorValues actorValues = new ActorValues(formChangeRecord.source, data.position());
+    data.skipBytes(ActorValues.COUNT * 5);
+
+    // These outlive the save's bytes, so they're read now.
+    PlayerStats temporaryStatChanges = actorValues.getTemporaryStatChanges();
+    PlayerStats permanentStatChanges = actorValues.getPermanentStatChanges();
+    int experience = actorValues.getExperience();
     
     // Actor flag, which should be zero for the player.
     data.assertByte(0);
@@ -82,6 +66,47 @@ public class PlayerACHRFormChangeRecord extends FormChangeRecord {
     // 0.4f for a save when the player is still a baby.
     data.readFloat();
 
+    skipRecordsBeforeInventory(data);
+
+    RawInventory inventory;
+    if (formChangeRecord.hasInventoryChange()) {
+      // The record should now have been parsed far enough to get to the inventory.
+      inventory = RawInventory.load(data);
+    } else {
+      inventory = RawInventory.emptyInventory();
+    }
+
+    return new PlayerACHRFormChangeRecord(
+        formChangeRecord, inventory, experience, permanentStatChanges, temporaryStatChanges,
+        actorValues);
+  }
+
+  /**
+   * Decodes the player's inventory into the visitor without decoding the
+   * rest of the record. Does nothing if the record has no inventory.
+   */
+  public static void visitInventory(FormChangeRecord formChangeRecord, InventoryVisitor visitor)
+      throws LoadException {
+
+    if (!formChangeRecord.hasInventoryChange()) {
+      return;
+    }
+
+    Fo3ByteBuffer data = formChangeRecord.getData();
+
+    // See parseFrom().
+    data.skipBytes(28);
+    data.checkPipes(4, ActorValues.COUNT);
+    data.skipBytes(ActorValues.COUNT * 5);
+    data.assertByte(0);
+    data.readFloat();
+    skipRecordsBeforeInventory(data);
+
+    InventoryDecoder.decode(data, visitor);
+  }
+
+  private static void skipRecordsBeforeInventory(Fo3ByteBuffer data) throws LoadException {
+
     // A count of how many records are between the move record
     // and the inventory.
     int recordCount = data.readUvarint();
@@ -93,7 +118,7 @@ public class PlayerACHRFormChangeRecord extends FormChangeRecord {
       switch(recordType) {
 
       case 0x18:
-        data.readFormIdIndex();
+        data.readPackedFormIdIndex();
         // 3 floats, a location maybe?
         data.readFloat(false);
         data.readFloat(false);
@@ -110,7 +135,7 @@ public class PlayerACHRFormChangeRecord extends FormChangeRecord {
         int count = data.readUvarint();
         for (int c = 0; c < count; c++) {
           // Then repeated structs of form id index and some byte.
-          data.readFormIdIndex();
+          data.readPackedFormIdIndex();
           data.readByte();
         }
       } break;
@@ -119,7 +144,7 @@ public class PlayerACHRFormChangeRecord extends FormChangeRecord {
       case 0x1D: {
         int count = data.readUvarint();
         for (int c = 0; c < count; c++) {
-          data.readFormIdIndex();
+          data.readPackedFormIdIndex();
         }
       } break;
 
@@ -127,7 +152,7 @@ public class PlayerACHRFormChangeRecord extends FormChangeRecord {
         // This is maybe "Enc Zone Extra"?
         // Seems to appear only if that bit is set
         // in the form change record flags.
-        data.readFormIdIndex();
+        data.readPackedFormIdIndex();
         break;
 
       case 0x60:
@@ -139,16 +164,5 @@ public class PlayerACHRFormChangeRecord extends FormChangeRecord {
             recordType, data.previousPosition());
       }
     }
-
-    RawInventory inventory;
-    if (formChangeRecord.hasInventoryChange()) {
-      // The record should now have been parsed far enough to get to the inventory.
-      inventory = RawInventory.load(data);
-    } else {
-      inventory = RawInventory.emptyInventory();
-    }
-
-    return new PlayerACHRFormChangeRecord(
-        formChangeRecord, inventory, experience, permanentStatChanges, temporaryStatChanges);
   }
 }
@@ -3,6 +3,7 @@ package save;
 import game.PlayerStats;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import save.SaveFile.LoadException;
@@ -13,33 +14,45 @@ import save.SaveFile.LoadException;
 public class PlayerNPCFormChangeRecord extends FormChangeRecord {
 
   public final PlayerStats npcStats;
-  public final List<FormIdIndex> spellList;
+
+  /** Packed form id indexes of the spells */
+  private final int[] spells;
   
   private PlayerNPCFormChangeRecord(
-      FormChangeRecord formChangeRecord, PlayerStats npcStats, List<FormIdIndex> spellList) {
+      FormChangeRecord formChangeRecord, PlayerStats npcStats, int[] spells) {
     super(formChangeRecord);
     this.npcStats = npcStats;
-    this.spellList = spellList;
+    this.spells = spells;
+  }
+
+  public List<FormIdIndex> getSpellList() {
+    List<FormIdIndex> spellList = new ArrayList<>(spells.length);
+    for (int spell : spells) {
+      spellList.add(new FormIdIndex(spell));
+    }
+    return Collections.unmodifiableList(spellList);
   }
 
   public static PlayerNPCFormChangeRecord parseFrom(
       FormChangeRecord formChangeRecord) throws LoadException {
 
-    Fo3ByteBuffer data = formChangeRecord.data;
-    data.position(formChangeRecord.dataPosition);
+    Fo3ByteBuffer data = formChangeRecord.getData();
 
     if (formChangeRecord.hasBaseData()) {
       data.skipBytes(24);
       data.assertPipe();
     }
 
-    List<FormIdIndex> spellList = new ArrayList<>();
+    int[] spells;
     if (formChangeRecord.hasSpellListChange()) {
       int count = data.readUvarint();
+      spells = new int[count];
       for (int i = 0; i < count; i++) {
-        spellList.add(data.readFormIdIndex());
+        spells[i] = data.readPackedFormIdIndex();
       }
       data.readByte(); // list always ends with a zero byte?
+    } else {
+      spells = new int[0];
     }
 
     PlayerStats stats;
@@ -56,6 +69,6 @@ public class PlayerNPCFormChangeRecord extends FormChangeRecord {
       stats = null;
     }
 
-    return new PlayerNPCFormChangeRecord(formChangeRecord, stats, spellList);
+    return new PlayerNPCFormChangeRecord(formChangeRecord, stats, spells);
   } 
 }
@@ -1,6 +1,7 @@
 package save;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -22,14 +23,17 @@ public class RawInventory implements Iterable<RawInventoryEntry> {
 
     public static class RawItemInfo {
 
+      private static final int[] NO_FORM_ID_INDEXES = new int[0];
+
       private Float condition = null;
       private boolean equipped = false;
       private int count = 1;
       private Integer hotkey = null;
-      private FormIdIndex ownerFormIdIndex = null;
-      private FormIdIndex scriptFormIdIndex = null;
+      // Packed form id indexes
+      private int ownerFormIdIndex = FormIdIndex.NONE;
+      private int scriptFormIdIndex = FormIdIndex.NONE;
 
-      private List<FormIdIndex> unknown1 = new ArrayList<>();
+      private int[] unknown1 = NO_FORM_ID_INDEXES;
       private List<Float> unknown2 = new ArrayList<>();
       private Boolean unknown3 = null;
 
@@ -46,13 +50,23 @@ public class RawInventory implements Iterable<RawInventoryEntry> {
         return hotkey;
       }
       public FormIdIndex getOwnerFormIdIndex() {
+        return FormIdIndex.of(ownerFormIdIndex);
+      }
+      public int getPackedOwnerFormIdIndex() {
         return ownerFormIdIndex;
       }
       public FormIdIndex getScriptFormIdIndex() {
+        return FormIdIndex.of(scriptFormIdIndex);
+      }
+      public int getPackedScriptFormIdIndex() {
         return scriptFormIdIndex;
       }
       public List<FormIdIndex> getUnknown1() {
-        return unknown1;
+        List<FormIdIndex> formIdIndexes = new ArrayList<>(unknown1.length);
+        for (int formIdIndex : unknown1) {
+          formIdIndexes.add(new FormIdIndex(formIdIndex));
+        }
+        return formIdIndexes;
       }
       public List<Float> getUnknown2() {
         return unknown2;
@@ -63,16 +77,21 @@ public class RawInventory implements Iterable<RawInventoryEntry> {
     }
 
     public final int inventoryIndex;
-    public final FormIdIndex formIdIndex;
+    /** Packed form id index, see {@link FormIdIndex} */
+    public final int formIdIndex;
     public final int count;
 
     public final List<RawItemInfo> itemInfos = new ArrayList<>();
     
-    RawInventoryEntry(FormIdIndex formIdIndex, int inventoryIndex, int count) {
+    RawInventoryEntry(int formIdIndex, int inventoryIndex, int count) {
       this.formIdIndex = formIdIndex;
       this.inventoryIndex = inventoryIndex;
       this.count = count;
     }
+
+    public FormIdIndex getFormIdIndex() {
+      return new FormIdIndex(formIdIndex);
+    }
   }
 
   private final List<RawInventoryEntry> inventory;
@@ -85,139 +104,93 @@ public class RawInventory implements Iterable<RawInventoryEntry> {
     return inventory;
   }
 
+  /**
+   * The packed form id index of each entry, in entry order.
+   */
+  public int[] getPackedFormIdIndexes() {
+    int[] formIdIndexes = new int[inventory.size()];
+    for (int i = 0; i < formIdIndexes.length; i++) {
+      formIdIndexes[i] = inventory.get(i).formIdIndex;
+    }
+    return formIdIndexes;
+  }
+
   @Override
   public Iterator<RawInventoryEntry> iterator() {
     return inventory.iterator();
   }
   
-  private static final byte INVENTORY_TAG_CONDITION = 0x25;
-  private static final byte INVENTORY_TAG_CONDITION_COUNT = 0x24;
-  private static final byte INVENTORY_TAG_EQUIPPED = 0x16;
-  private static final byte INVENTORY_TAG_OWNER = 0x21;
-  private static final byte INVENTORY_TAG_HOTKEY = 0x4A;
-  private static final byte INVENTORY_TAG_SCRIPT = 0x0D;
-
-  private static final byte INVENTORY_TAG_UNKNOWN1 = 0x1C;
-  private static final byte INVENTORY_TAG_UNKNOWN2 = 0x30;
-  private static final byte INVENTORY_TAG_UNKNOWN3 = 0x3E;
-
   /**
    * Loads an inventory record from the given data. The buffer must be
    * positioned at the start of the inventory (i.e., the first byte of the
    * inventory size varint).
    */
   public static RawInventory load(Fo3ByteBuffer data) throws LoadException {
+    Builder builder = new Builder();
+    InventoryDecoder.decode(data, builder);
+    return new RawInventory(builder.inventory);
+  }
 
-    // The inventory record is almost the same as in TES4:
-    // http://www.uesp.net/wiki/Tes4Mod:Save_File_Format/Inventory
-    //
-    // Except the counts are variable-length integers. The bottom 2 bits of the first byte
-    // indicate how many bytes are in the number:
-    // 0b00 = 1 byte, 0b01 = 2 bytes, 0b10 = 4 bytes.
-
-    int inventoryCount = data.readUvarint();
-
-    List<RawInventoryEntry> inventory = new ArrayList<>();
-    for (int i = 0; i < inventoryCount; i++) {
+  private static class Builder implements InventoryVisitor {
 
-      FormIdIndex formIdIndex = data.readFormIdIndex();
-      int itemCount = data.readInt();
+    private List<RawInventoryEntry> inventory = new ArrayList<>();
+    private RawInventoryEntry entry;
+    private RawItemInfo item;
 
-      RawInventoryEntry entry= new RawInventoryEntry(formIdIndex, i, itemCount);
+    @Override
+    public void onEntry(int inventoryIndex, int formIdIndex, int count, int itemInfoCount) {
+      entry = new RawInventoryEntry(formIdIndex, inventoryIndex, count);
       inventory.add(entry);
+    }
 
-      int itemInfoCount = data.readUvarint();
-      for (int j = 0; j < itemInfoCount; j++) {
-
-        RawItemInfo item = new RawItemInfo();
-        entry.itemInfos.add(item);
-
-        int tagCount = data.readUvarint();
-        for (int k = 0; k < tagCount; k++) {
-
-          byte tag = data.readByte();
-          
-          switch (tag) {
-          
-          case INVENTORY_TAG_CONDITION:
-            item.condition = data.readFloat();
-            break;
-
-          case INVENTORY_TAG_CONDITION_COUNT:
-            item.count = data.readShort();
-            break;
-          
-          case INVENTORY_TAG_EQUIPPED:
-            item.equipped = true;
-            break;
-            
-          case INVENTORY_TAG_HOTKEY:
-            item.hotkey = Integer.valueOf(data.readByte());
-            break;
-            
-          case INVENTORY_TAG_OWNER:
-            item.ownerFormIdIndex = data.readFormIdIndex();
-            break;
-
-          case INVENTORY_TAG_SCRIPT:
-            item.scriptFormIdIndex = data.readFormIdIndex();
-
-            int variableCount = data.readUvarint();
-
-            for (int v = 0; v < variableCount; v++) {
-
-              // Unlike in TES4, where the variable index and variable type are stored
-              // in separate shorts, F03 appears to put them in one int. 
-              // See http://www.uesp.net/wiki/Tes4Mod:Save_File_Format/Properties
-
-              int variableIndexAndFlags = data.readInt();
-
-              // How many bits are in the flags?
-              int variableFlags = variableIndexAndFlags & 0xFF000000;
-
-              if (variableFlags == 0) {
-                // variable is a 64 bit float
-                data.readDouble();
-              } else if (variableFlags == 0x8000_0000) {
-                // variable is a form id index
-                data.readFormIdIndex();
-              } else {
-                throw new LoadException(
-                    "Unknown variable flags in script at 0x%08X: index and flags: 0x%08X",
-                    data.previousPosition(), variableIndexAndFlags);
-              }
-            }
-
-            // Always zeros?
-            data.assertByte(0);
-            data.assertByte(0);
-            break;
-
-          case INVENTORY_TAG_UNKNOWN1:
-            // Don't know what this is, but it appears to be followed by a form id index,
-            // and there can be more than one.
-            item.unknown1.add(data.readFormIdIndex());
-            break;
-
-          case INVENTORY_TAG_UNKNOWN2:
-            // Don't know what this is, but it appears to be followed by some float.
-            item.unknown2.add(data.readFloat());
-            break;
-
-          case INVENTORY_TAG_UNKNOWN3:
-            // Don't know what this is, but it appears to have no data, and appears
-            // with items that have a count of zero.
-            item.unknown3 = true;
-            break;
-
-          default:
-            throw new LoadException(
-                "Unknown inventory tag at 0x%08X: 0x%02X", data.previousPosition(), tag);
-          }
-        }
-      } 
+    @Override
+    public void onItemInfo(int tagCount) {
+      item = new RawItemInfo();
+      entry.itemInfos.add(item);
     }
 
-    return new RawInventory(inventory);
+    @Override
+    public void onTag(byte tag, int intValue, float floatValue) {
+
+      switch (tag) {
+
+      case TAG_CONDITION:
+        item.condition = floatValue;
+        break;
+
+      case TAG_CONDITION_COUNT:
+        item.count = intValue;
+        break;
+
+      case TAG_EQUIPPED:
+        item.equipped = true;
+        break;
+
+      case TAG_HOTKEY:
+        item.hotkey = intValue;
+        break;
+
+      case TAG_OWNER:
+        item.ownerFormIdIndex = intValue;
+        break;
+
+      case TAG_SCRIPT:
+        item.scriptFormIdIndex = intValue;
+        break;
+
+      case TAG_UNKNOWN1:
+        item.unknown1 = Arrays.copyOf(item.unknown1, item.unknown1.length + 1);
+        item.unknown1[item.unknown1.length - 1] = intValue;
+        break;
+
+      case TAG_UNKNOWN2:
+        item.unknown2.add(floatValue);
+        break;
+
+      case TAG_UNKNOWN3:
+        item.unknown3 = true;
+        break;
+      }
+    }
   }
 }
@@ -0,0 +1,150 @@
+package save;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A set of form change record slots, as a bitmap with one bit per record in
+ * a {@link FormChangeRecordTable}. Sets from the same table can be combined
+ * with {@link #and(RecordSet)}, {@link #or(RecordSet)} and
+ * {@link #andNot(RecordSet)}. Sets are immutable.
+ */
+public final class RecordSet {
+
+  private final long[] words;
+  /** The number of records in the table, i.e., one past the largest slot. */
+  private final int size;
+
+  RecordSet(long[] words, int size) {
+    this.words = words;
+    this.size = size;
+  }
+
+  static RecordSet empty(int size) {
+    return new RecordSet(new long[wordCount(size)], size);
+  }
+
+  static RecordSet all(int size) {
+    long[] words = new long[wordCount(size)];
+    Arrays.fill(words, -1L);
+    if (size % 64 != 0) {
+      words[words.length - 1] = (1L << size) - 1;
+    }
+    return new RecordSet(words, size);
+  }
+
+  static int wordCount(int size) {
+    return (size + 63) >>> 6;
+  }
+
+  public boolean contains(int slot) {
+    return slot >= 0 && slot < size && (words[slot >>> 6] & (1L << slot)) != 0;
+  }
+
+  public boolean isEmpty() {
+    for (long word : words) {
+      if (word != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The number of records in the set.
+   */
+  public int cardinality() {
+    int cardinality = 0;
+    for (long word : words) {
+      cardinality += Long.bitCount(word);
+    }
+    return cardinality;
+  }
+
+  public RecordSet and(RecordSet other) {
+    checkSameTable(other);
+    long[] result = new long[words.length];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = words[i] & other.words[i];
+    }
+    return new RecordSet(result, size);
+  }
+
+  public RecordSet or(RecordSet other) {
+    checkSameTable(other);
+    long[] result = new long[words.length];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = words[i] | other.words[i];
+    }
+    return new RecordSet(result, size);
+  }
+
+  public RecordSet andNot(RecordSet other) {
+    checkSameTable(other);
+    long[] result = new long[words.length];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = words[i] & ~other.words[i];
+    }
+    return new RecordSet(result, size);
+  }
+
+  private void checkSameTable(RecordSet other) {
+    if (other.size != size) {
+      throw new IllegalArgumentException(
+          "Record sets are from different tables: " + size + " and " + other.size + " records");
+    }
+  }
+
+  /**
+   * The first slot in the set at or after the given slot, or -1.
+   */
+  public int nextSlot(int from) {
+    if (from < 0) {
+      from = 0;
+    }
+    int i = from >>> 6;
+    if (i >= words.length) {
+      return -1;
+    }
+    long word = words[i] & (-1L << from);
+    while (true) {
+      if (word != 0) {
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+      }
+      if (++i == words.length) {
+        return -1;
+      }
+      word = words[i];
+    }
+  }
+
+  /**
+   * Calls the action with each slot in the set, in file order.
+   */
+  public void forEach(IntConsumer action) {
+    for (int i = 0; i < words.length; i++) {
+      for (long word = words[i]; word != 0; word &= word - 1) {
+        action.accept((i << 6) + Long.numberOfTrailingZeros(word));
+      }
+    }
+  }
+
+  /**
+   * The slots in the set, in file order.
+   */
+  public int[] toSlots() {
+    int[] slots = new int[cardinality()];
+    int n = 0;
+    for (int i = 0; i < words.length; i++) {
+      for (long word = words[i]; word != 0; word &= word - 1) {
+        slots[n++] = (i << 6) + Long.numberOfTrailingZeros(word);
+      }
+    }
+    return slots;
+  }
+
+  @Override
+  public String toString() {
+    return "RecordSet(" + cardinality() + " of " + size + " records)";
+  }
+}
@@ -1,9 +1,24 @@
 package save;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import save.Fo3ByteBuffer.LoadMode;
+import save.Fo3ByteBuffer.Validation;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
 
 public class SaveFile {
 
@@ -18,6 +33,12 @@ public class SaveFile {
     }
   }
 
+  /** The magic string plus the header size int that follows it. */
+  static final int HEADER_PREFIX_SIZE = 11 + 4;
+
+  /** Sanity limit on the header size, the real ones are a few hundred bytes. */
+  static final int MAX_HEADER_SIZE = 64 * 1024;
+
   public final File file;
   
   // These are in the order that they appear in
@@ -27,39 +48,181 @@ public class SaveFile {
 
   public final List<String> plugins;
 
-  public final FileLocations fileLocations;
+  /** The plugins, for resolving form ids, see {@link LoadOrder#toKey(int)}. */
+  public final LoadOrder loadOrder;
 
-  public final MiscStats miscStats;
+  public final FileLocations fileLocations;
 
-  public final FormChangeRecordTable formChangeRecordTable;
+  private final Fo3ByteBuffer data;
+  private final int screenshotPosition;
 
-  public final FormIdTable formIdTable;
+  // In a lazily loaded save these are decoded on first use, see
+  // loadLazy(). Guarded by this.
+  private MiscStats miscStats;
+  private FormChangeRecordTable formChangeRecordTable;
+  private FormIdTable formIdTable;
+  /** The record headers walked so far, until the whole table is built. */
+  private FormChangeRecordTable.Builder recordWalk;
 
-  private SaveFile(File file, Header header, List<String> plugins,
-      FileLocations fileLocations, MiscStats miscStats,
+  SaveFile(Fo3ByteBuffer data, File file, Header header, int screenshotPosition,
+      List<String> plugins, FileLocations fileLocations, MiscStats miscStats,
       FormChangeRecordTable formChangeRecordsTable, FormIdTable formIdTable) {
+    this(data, file, header, screenshotPosition, plugins, fileLocations);
+    this.miscStats = miscStats;
+    this.formChangeRecordTable = formChangeRecordsTable;
+    this.formIdTable = formIdTable;
+  }
+
+  /**
+   * A save whose other sections are decoded when they're first used.
+   */
+  private SaveFile(Fo3ByteBuffer data, File file, Header header, int screenshotPosition,
+      List<String> plugins, FileLocations fileLocations) {
+    this.data = data;
+    this.screenshotPosition = screenshotPosition;
     this.file = file;
     this.header = header;
     this.plugins = plugins;
+    this.loadOrder = new LoadOrder(plugins);
     this.fileLocations = fileLocations;
-    this.miscStats = miscStats;
-    this.formChangeRecordTable = formChangeRecordsTable;
-    this.formIdTable = formIdTable;
   }
 
-  public FormChangeRecord getFormChangeRecord(int formId) {
-    FormIdIndex formIdIndex = formIdTable.findFormIdIndexByFormId(formId);
-    if (formIdIndex == null) {
+  public synchronized MiscStats getMiscStats() throws LoadException {
+    if (miscStats == null) {
+      miscStats = MiscStats.load(cursor(), fileLocations);
+    }
+    return miscStats;
+  }
+
+  public synchronized FormIdTable getFormIdTable() throws LoadException {
+    if (formIdTable == null) {
+      formIdTable = FormIdTable.load(cursor(), fileLocations);
+    }
+    return formIdTable;
+  }
+
+  /**
+   * The whole form change record table. In a lazily loaded save this walks
+   * all the record headers the first time, lookups with
+   * {@link #getFormChangeRecord(int)} don't need it.
+   */
+  public synchronized FormChangeRecordTable getFormChangeRecordTable() throws LoadException {
+    if (formChangeRecordTable == null) {
+      FormChangeRecordTable.Builder builder = recordWalk;
+      if (builder == null) {
+        builder = new FormChangeRecordTable.Builder(fileLocations);
+      }
+      Fo3ByteBuffer cursor = cursor();
+      builder.walkToEnd(cursor);
+      formChangeRecordTable = builder.build(cursor);
+      recordWalk = null;
+    }
+    return formChangeRecordTable;
+  }
+
+  /**
+   * Gets the record for the given form id, or null. In a lazily loaded save
+   * the record headers are only walked as far as the record, and records
+   * that conflict with each other are only detected once the whole table is
+   * built.
+   */
+  public FormChangeRecord getFormChangeRecord(int formId) throws LoadException {
+    int formIdIndex = getFormIdTable().findPackedFormIdIndexByFormId(formId);
+    if (formIdIndex == FormIdIndex.NONE) {
       return null;
     }
 
-    FormChangeRecord formChangeRecord = formChangeRecordTable.get(formIdIndex);
-    return formChangeRecord;
+    synchronized (this) {
+      if (formChangeRecordTable != null) {
+        return formChangeRecordTable.get(formIdIndex);
+      }
+      if (recordWalk == null) {
+        recordWalk = new FormChangeRecordTable.Builder(fileLocations);
+      }
+      Fo3ByteBuffer cursor = cursor();
+      int slot = recordWalk.walkTo(cursor, formIdIndex);
+      return slot == -1 ? null : recordWalk.getRecord(slot, cursor);
+    }
+  }
+
+  private Fo3ByteBuffer cursor() {
+    return data.getSource().cursor();
+  }
+
+  Fo3ByteSource getSource() {
+    return data.getSource();
+  }
+
+  /**
+   * Gives the save's buffer back to its pool if it was loaded into a pooled
+   * buffer. Nothing from this save (records, inventories, screenshots) may be
+   * used afterwards.
+   */
+  public void release() {
+    data.release();
+  }
+
+  /**
+   * Returns the save's screenshot. The image reads its pixels straight from
+   * the loaded (or mapped) save, it doesn't copy them.
+   */
+  public BufferedImage getScreenshot() {
+    return Screenshot.create(
+        data.buffer(), screenshotPosition, header.screenshotWidth, header.screenshotHeight);
   }
   
   
   public static SaveFile load(File file) throws LoadException, IOException {
-    return load(new Fo3ByteBuffer(file));
+    return load(file, LoadMode.HEAP);
+  }
+
+  public static SaveFile load(File file, LoadMode loadMode) throws LoadException, IOException {
+    return load(file, loadMode, Validation.STRICT);
+  }
+
+  public static SaveFile load(File file, LoadMode loadMode, Validation validation)
+      throws LoadException, IOException {
+    return load(new Fo3ByteBuffer(file, loadMode, validation));
+  }
+
+  /**
+   * Loads the save into a buffer from the given pool. Call {@link #release()}
+   * when the save is no longer used to give the buffer back.
+   */
+  public static SaveFile load(File file, BufferPool pool, Validation validation)
+      throws LoadException, IOException {
+    Fo3ByteBuffer data = new Fo3ByteBuffer(file, pool, validation);
+    try {
+      return load(data);
+    } catch (LoadException | RuntimeException e) {
+      data.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Loads only the header, the plugins and the file location table. The
+   * misc stats, the form id table and the form change records are decoded
+   * when they're first used, and only as far as they're used: getting a
+   * few records walks the record headers up to those records, and decodes
+   * nothing else. With {@link LoadMode#MAPPED} the rest of the file is
+   * never read.
+   */
+  public static SaveFile loadLazy(File file, LoadMode loadMode, Validation validation)
+      throws LoadException, IOException {
+    return loadLazy(new Fo3ByteBuffer(file, loadMode, validation));
+  }
+
+  public static SaveFile loadLazy(Fo3ByteBuffer data) throws LoadException {
+    Header header = Header.load(data);
+    int screenshotPosition = data.position();
+    loadScreenshot(data, header);
+    List<String> plugins = loadPlugins(data);
+    FileLocations fileLocations = FileLocations.load(data);
+    fileLocations.checkBounds(data.numBytes());
+
+    return new SaveFile(
+        data, data.getFile(), header, screenshotPosition, plugins, fileLocations);
   }
 
   public static SaveFile load(Fo3ByteBuffer data) throws LoadException {
@@ -67,9 +230,11 @@ public class SaveFile {
     // and plugins to get to the file location table,
     // because there isn't a pointer to it in the save file.
     Header header = Header.load(data);
+    int screenshotPosition = data.position();
     loadScreenshot(data, header);
     List<String> plugins = loadPlugins(data);
     FileLocations fileLocations = FileLocations.load(data);
+    fileLocations.checkBounds(data.numBytes());
 
     // Only reading the first part of the globals
     MiscStats miscStats = MiscStats.load(data, fileLocations);
@@ -79,8 +244,10 @@ public class SaveFile {
     FormIdTable formIdTable = FormIdTable.load(data, fileLocations);
 
     return new SaveFile(
+        data,
         data.getFile(),
         header,
+        screenshotPosition,
         plugins,
         fileLocations,
         miscStats,
@@ -88,14 +255,119 @@ public class SaveFile {
         formIdTable);
   }
 
-  private static void loadScreenshot(Fo3ByteBuffer data, Header header) {
+  /**
+   * Reads only the header of the given save file, with a small positional
+   * read rather than loading the whole file.
+   */
+  public static Header readHeader(Path path) throws LoadException, IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return loadHeader(path, readHeaderBytes(path, channel));
+    }
+  }
+
+  /**
+   * Reads only the header and screenshot of the given save file, and
+   * returns the screenshot. The image is backed by the bytes that were read.
+   */
+  public static BufferedImage readScreenshot(Path path) throws LoadException, IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+      Fo3ByteBuffer data = readHeaderBytes(path, channel);
+      Header header = loadHeader(path, data);
+
+      // The screenshot immediately follows the header.
+      int screenshotSize = header.screenshotWidth * header.screenshotHeight * 3;
+      if (screenshotSize < 0) {
+        throw new LoadException("Bad screenshot size in %s: %dx%d",
+            path, header.screenshotWidth, header.screenshotHeight);
+      }
+      ByteBuffer screenshot = ByteBuffer.allocate(screenshotSize);
+      readFully(channel, screenshot, data.position());
+
+      return Screenshot.create(screenshot, 0, header.screenshotWidth, header.screenshotHeight);
+    }
+  }
+
+  /**
+   * Reads the magic, the header size, and as many bytes as the header size
+   * says the rest of the header is.
+   */
+  private static Fo3ByteBuffer readHeaderBytes(Path path, FileChannel channel)
+      throws LoadException, IOException {
+
+    ByteBuffer prefix = ByteBuffer.allocate(HEADER_PREFIX_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(channel, prefix, 0);
+
+    // The header size doesn't include the magic or the header size itself.
+    int headerSize = prefix.getInt(11);
+    if (headerSize < 0 || headerSize > MAX_HEADER_SIZE) {
+      throw new LoadException("Bad header size in %s: %d", path, headerSize);
+    }
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_PREFIX_SIZE + headerSize);
+    readFully(channel, header, 0);
+    header.flip();
+    return new Fo3ByteBuffer(path.toFile(), header);
+  }
+
+  private static Header loadHeader(Path path, Fo3ByteBuffer data) throws LoadException {
+    try {
+      return Header.load(data);
+    } catch (BufferUnderflowException e) {
+      throw new LoadException(
+          "Header in %s is larger than its size %d", path, data.numBytes() - HEADER_PREFIX_SIZE);
+    }
+  }
+
+  /**
+   * Reads the headers of all the saves in the given directory in parallel.
+   * Saves whose headers can't be read are left out.
+   *
+   * @return the save summaries, newest first
+   */
+  public static List<SaveSummary> scanHeaders(Path directory) throws IOException {
+    try (Stream<Path> paths = Files.list(directory)) {
+      return paths
+          .filter(p -> p.getFileName().toString().endsWith(".fos"))
+          // Files.list() doesn't split well, so collect before going parallel.
+          .collect(toList())
+          .parallelStream()
+          .map(SaveFile::readSummary)
+          .filter(Objects::nonNull)
+          .sorted(comparing((SaveSummary s) -> s.lastModified).reversed())
+          .collect(toList());
+    }
+  }
+
+  private static SaveSummary readSummary(Path path) {
+    try {
+      long lastModified = Files.getLastModifiedTime(path).toMillis();
+      long size = Files.size(path);
+      return new SaveSummary(path, lastModified, size, readHeader(path));
+    } catch (LoadException | IOException e) {
+      System.out.println("Could not read header of " + path + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException, LoadException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + buffer.position());
+      if (read < 0) {
+        throw new LoadException("Unexpected end of file at 0x%08X", position + buffer.position());
+      }
+    }
+  }
+
+  static void loadScreenshot(Fo3ByteBuffer data, Header header) {
 
     int screenshotSize = header.screenshotHeight * header.screenshotWidth * 3;
 
     data.skipBytes(screenshotSize);
   }
 
-  private static List<String> loadPlugins(Fo3ByteBuffer data) throws LoadException {
+  static List<String> loadPlugins(Fo3ByteBuffer data) throws LoadException {
     // unknown, always 0x15?
     data.assertByte(0x15, false);
 
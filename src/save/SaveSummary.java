@@ -0,0 +1,28 @@
+package save;
+
+import java.nio.file.Path;
+
+/**
+ * The header of a save file plus some file system information, for listing
+ * and sorting saves without loading them.
+ */
+public class SaveSummary {
+
+  public final Path path;
+  public final long lastModified;
+  public final long size;
+  public final Header header;
+
+  SaveSummary(Path path, long lastModified, long size, Header header) {
+    this.path = path;
+    this.lastModified = lastModified;
+    this.size = size;
+    this.header = header;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: %s, level %d, %s, %s",
+        path.getFileName(), header.name, header.level, header.location, header.playtime);
+  }
+}
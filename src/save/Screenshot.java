@@ -0,0 +1,79 @@
+package save;
+
+import java.awt.Point;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+
+/**
+ * Makes images of the screenshots in save files that read their pixels
+ * straight from the save's buffer, without copying them.
+ */
+public class Screenshot {
+
+  private Screenshot() {
+  }
+
+  /**
+   * A read-only DataBuffer over a range of a ByteBuffer. The ByteBuffer is
+   * only read with absolute gets, so its position doesn't matter.
+   */
+  private static class ByteBufferDataBuffer extends DataBuffer {
+
+    private final ByteBuffer data;
+    private final int offset;
+
+    ByteBufferDataBuffer(ByteBuffer data, int offset, int size) {
+      super(DataBuffer.TYPE_BYTE, size);
+      this.data = data;
+      this.offset = offset;
+    }
+
+    @Override
+    public int getElem(int bank, int i) {
+      return data.get(offset + i) & 0xFF;
+    }
+
+    @Override
+    public void setElem(int bank, int i, int val) {
+      throw new UnsupportedOperationException("Screenshots are read-only");
+    }
+  }
+
+  /**
+   * Returns an image of the width x height RGB pixels at the given offset
+   * in data. The image reads from data, so the bytes must not change or be
+   * reused while the image is in use.
+   */
+  static BufferedImage create(ByteBuffer data, int offset, int width, int height) {
+
+    int size = width * height * 3;
+    if (offset < 0 || offset + size > data.limit()) {
+      throw new IllegalArgumentException(String.format(
+          "Screenshot of %dx%d at 0x%08X runs past the end of the data at 0x%08X",
+          width, height, offset, data.limit()));
+    }
+
+    SampleModel sampleModel = new PixelInterleavedSampleModel(
+        DataBuffer.TYPE_BYTE, width, height, 3, width * 3, new int[] { 0, 1, 2 });
+
+    WritableRaster raster = Raster.createWritableRaster(
+        sampleModel, new ByteBufferDataBuffer(data, offset, size), new Point(0, 0));
+
+    ComponentColorModel colorModel = new ComponentColorModel(
+        ColorSpace.getInstance(ColorSpace.CS_sRGB),
+        false,
+        false,
+        Transparency.OPAQUE,
+        DataBuffer.TYPE_BYTE);
+
+    return new BufferedImage(colorModel, raster, false, null);
+  }
+}
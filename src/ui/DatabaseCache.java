@@ -0,0 +1,89 @@
+package ui;
+
+import game.Database;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import plugin.PluginItems;
+import save.SaveFile;
+
+/**
+ * The item database of each load order, read from the plugins in the game's
+ * Data directory, or else from items.txt, which only has the items of the
+ * base game. Saves with the same load order share a database, and the least
+ * recently used are dropped.
+ *
+ * Building a database for a new load order reads every plugin in it, and
+ * other load orders wait for it, so call {@link #get(SaveFile)} off the
+ * event thread.
+ */
+public class DatabaseCache {
+
+  private static final int MAX_DATABASES = 4;
+
+  private final File dataDirectory;
+  private final File cacheDirectory;
+  private final Database textDatabase;
+
+  // Keyed by the lower case plugin names. Guarded by this.
+  private final Map<List<String>, Database> databases =
+      new LinkedHashMap<List<String>, Database>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<String>, Database> eldest) {
+          return size() > MAX_DATABASES;
+        }
+      };
+
+  /**
+   * @param cacheDirectory where the compiled databases are kept, see
+   *     {@link PluginItems#load(File, List, File)}
+   * @param textDatabase used when the plugins can't be read
+   */
+  public DatabaseCache(File dataDirectory, File cacheDirectory, Database textDatabase) {
+    this.dataDirectory = dataDirectory;
+    this.cacheDirectory = cacheDirectory;
+    this.textDatabase = textDatabase;
+  }
+
+  /**
+   * The database for the save's load order. If the plugins can't be read
+   * this is the items.txt database, which isn't cached, so the plugins are
+   * tried again next time.
+   */
+  public synchronized Database get(SaveFile save) {
+    List<String> key = new ArrayList<>();
+    for (String plugin : save.plugins) {
+      key.add(plugin.toLowerCase(Locale.ROOT));
+    }
+
+    Database database = databases.get(key);
+    if (database == null) {
+      database = load(save);
+      if (database == null) {
+        return textDatabase;
+      }
+      databases.put(key, database);
+    }
+    return database;
+  }
+
+  /** The database read from the plugins, or null. */
+  private Database load(SaveFile save) {
+    if (dataDirectory.isDirectory()) {
+      try {
+        return Database.open(
+            PluginItems.load(dataDirectory, save.plugins, cacheDirectory), save.loadOrder);
+      } catch (IOException e) {
+        System.out.println("Could not read the items from the plugins, using items.txt: "
+            + e.getMessage());
+      }
+    }
+    return null;
+  }
+}
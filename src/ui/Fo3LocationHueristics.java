@@ -32,7 +32,7 @@ public class Fo3LocationHueristics {
           for (String f : falloutVersion) {
             Path path = Paths.get(drive.toString(), p, m, f, "Fallout3.exe");
             if (Files.exists(path)) {
-              return path.toString();
+              return path.getParent().toString();
             }
           }
         }
@@ -8,14 +8,17 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import save.LoadOrder;
 
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toMap;
-import static java.util.stream.Collectors.toSet;
 
 public class Settings {
 
@@ -35,23 +38,54 @@ public class Settings {
   public boolean dropHotkeyedItems = false;
   public boolean dropPinnedItems = false;
 
+  /**
+   * e.g., "Fallout3.esm:015038|Anchorage.esm:000ABC", the same in every load
+   * order, see {@link LoadOrder#keyToString(long)}.
+   */
+  private String pinnedItems = "";
+  /** Pins from before they were stored by plugin, save-local hex form ids. */
   private String pinnedFormIds = "";
 
+  /**
+   * The keys of the pinned items, see {@link LoadOrder#toKey(int)}.
+   */
+  public Set<Long> getPinnedKeys() {
+    Set<Long> keys = new HashSet<>();
+    for (String pinned : pinnedItems.split(Pattern.quote("|"))) {
+      if (pinned.isEmpty()) {
+        continue;
+      }
+      try {
+        keys.add(LoadOrder.parseKey(pinned));
+      } catch (IllegalArgumentException e) {
+        System.out.println("Ignoring pinned item " + pinned + ": " + e.getMessage());
+      }
+    }
 
-  public Set<Integer> getPinnedFormIds() {
-    return Arrays.asList(pinnedFormIds.split(",")).stream()
+    // Fallout3.esm is always first in the load order, so its form ids are
+    // the only old ones that can be placed.
+    int baseGame = LoadOrder.getPluginId("Fallout3.esm");
+    Arrays.asList(pinnedFormIds.split(",")).stream()
         .filter(s -> !s.isEmpty())
-        .map(s -> Integer.parseInt(s, 16))
-        .collect(toSet());
+        .map(s -> Integer.parseUnsignedInt(s, 16))
+        .filter(formId -> formId >>> 24 == 0)
+        .forEach(formId -> keys.add(LoadOrder.key(baseGame, formId)));
+    return keys;
   }
 
-  public boolean setPinnedFormIds(Set<Integer> formIds) {
-    String pinnedFormIds = formIds.stream()
+  /**
+   * @return whether the pins changed
+   */
+  public boolean setPinnedKeys(Set<Long> keys) {
+    String pinnedItems = keys.stream()
+        .filter(key -> key != LoadOrder.NO_KEY)
+        .map(LoadOrder::keyToString)
         .sorted()
-        .map(i -> Integer.toHexString(i))
-        .collect(joining(","));
-    boolean changed = this.pinnedFormIds.equals(pinnedFormIds);
-    this.pinnedFormIds = pinnedFormIds;
+        // Can't be in a plugin's file name on Windows.
+        .collect(joining("|"));
+    boolean changed = !this.pinnedItems.equals(pinnedItems) || !pinnedFormIds.isEmpty();
+    this.pinnedItems = pinnedItems;
+    this.pinnedFormIds = "";
     return changed;
   }
   
@@ -0,0 +1,144 @@
+package ui;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import save.SaveFile;
+import save.SaveFile.LoadException;
+
+/**
+ * Downscaled save screenshots for browsing saves. Thumbnails are kept until
+ * their total size goes over a limit, and then the least recently used are
+ * dropped. A save that changes on disk gets a new thumbnail.
+ */
+public class ThumbnailCache {
+
+  private static class Key {
+    final Path path;
+    final long lastModified;
+    final long fileSize;
+    final int maxWidth;
+    final int maxHeight;
+
+    Key(Path path, long lastModified, long fileSize, int maxWidth, int maxHeight) {
+      this.path = path;
+      this.lastModified = lastModified;
+      this.fileSize = fileSize;
+      this.maxWidth = maxWidth;
+      this.maxHeight = maxHeight;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, lastModified, fileSize, maxWidth, maxHeight);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return path.equals(other.path)
+          && lastModified == other.lastModified
+          && fileSize == other.fileSize
+          && maxWidth == other.maxWidth
+          && maxHeight == other.maxHeight;
+    }
+  }
+
+  private final long maxPixels;
+  private long pixels;
+
+  // Access ordered, so iteration starts at the least recently used.
+  private final Map<Key, BufferedImage> thumbnails = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * @param maxPixels the most pixels to keep across all thumbnails
+   */
+  public ThumbnailCache(long maxPixels) {
+    this.maxPixels = maxPixels;
+  }
+
+  /**
+   * Returns the save's screenshot scaled to fit in maxWidth x maxHeight.
+   */
+  public BufferedImage get(Path save, int maxWidth, int maxHeight)
+      throws LoadException, IOException {
+
+    Key key = new Key(
+        save,
+        Files.getLastModifiedTime(save).toMillis(),
+        Files.size(save),
+        maxWidth,
+        maxHeight);
+
+    synchronized (this) {
+      BufferedImage thumbnail = thumbnails.get(key);
+      if (thumbnail != null) {
+        return thumbnail;
+      }
+    }
+
+    // Scale outside of the lock, so thumbnails can be made in parallel.
+    BufferedImage thumbnail = scale(SaveFile.readScreenshot(save), maxWidth, maxHeight);
+
+    synchronized (this) {
+      BufferedImage previous = thumbnails.put(key, thumbnail);
+      if (previous != null) {
+        pixels -= pixels(previous);
+      }
+      pixels += pixels(thumbnail);
+
+      Iterator<BufferedImage> eldest = thumbnails.values().iterator();
+      while (pixels > maxPixels && eldest.hasNext()) {
+        BufferedImage evicted = eldest.next();
+        if (evicted == thumbnail) {
+          // Always keep the thumbnail that was just asked for.
+          continue;
+        }
+        pixels -= pixels(evicted);
+        eldest.remove();
+      }
+    }
+    return thumbnail;
+  }
+
+  public synchronized void clear() {
+    thumbnails.clear();
+    pixels = 0;
+  }
+
+  private static long pixels(BufferedImage image) {
+    return (long) image.getWidth() * image.getHeight();
+  }
+
+  private static BufferedImage scale(BufferedImage image, int maxWidth, int maxHeight) {
+
+    double scale = Math.min(1.0, Math.min(
+        (double) maxWidth / image.getWidth(),
+        (double) maxHeight / image.getHeight()));
+
+    int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+    int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+    BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = thumbnail.createGraphics();
+    try {
+      g.setRenderingHint(
+          RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.drawImage(image, 0, 0, width, height, null);
+    } finally {
+      g.dispose();
+    }
+    return thumbnail;
+  }
+}
@@ -42,9 +42,11 @@ import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.SortOrder;
 import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
 import javax.swing.border.EmptyBorder;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
+import javax.swing.event.TableModelEvent;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableCellEditor;
@@ -63,6 +65,9 @@ import org.jfree.data.general.DefaultPieDataset;
 import org.jfree.data.general.PieDataset;
 import org.jfree.util.Rotation;
 
+import save.Fo3ByteBuffer.LoadMode;
+import save.Fo3ByteBuffer.Validation;
+import save.LoadOrder;
 import save.SaveFile;
 import ui.table.Column;
 import ui.table.Column.EditPredicate;
@@ -73,15 +78,15 @@ import ui.table.TableFactory.Filter;
 import analysis.Analysis;
 import analysis.Analysis.Drop;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toSet;
 
 public class Ui {
 
-  public static final Set<Integer> PINNED_ITEMS = new HashSet<>(Arrays.asList(
-      0x00015038, // pip-boy 3000
-      0x00025B83, // pip-boy glove
-      0x0002D3A5  // Food sanitizer
+  /** Keys, see {@link LoadOrder#toKey(int)}. */
+  public static final Set<Long> PINNED_ITEMS = new HashSet<>(Arrays.asList(
+      LoadOrder.parseKey("Fallout3.esm:015038"), // pip-boy 3000
+      LoadOrder.parseKey("Fallout3.esm:025B83"), // pip-boy glove
+      LoadOrder.parseKey("Fallout3.esm:02D3A5")  // Food sanitizer
   ));
 
   public static class DropCountSpinner extends SpinnerEditor {
@@ -149,8 +154,9 @@ public class Ui {
   public static class PinnedEditPredicate implements EditPredicate {
     @Override
     public boolean cellEditable(Object row) {
-      Row r = (Row) row;
-      return !PINNED_ITEMS.contains(r.formId);
+      // Forms created while playing have no key to store the pin by.
+      long formKey = ((Row) row).backingItemStack.formKey;
+      return formKey != LoadOrder.NO_KEY && !PINNED_ITEMS.contains(formKey);
     }
   }
 
@@ -180,16 +186,18 @@ public class Ui {
 
   private static final String FRAME_TITLE = "Fallout 3 Save Analyzer";
 
-  private static final int BOTTLE_CAPS_FORM_ID = 0xF;
-  
-  private final Database database;
+  private final DatabaseCache databases;
   private final DirectoryWatcher directoryWatcher;
   private final Settings settings;
 
   private final List<Row> rows = new ArrayList<>();
 
   private Game game;
+  /** The items of the game's load order. */
+  private Database database;
   private Inventory inventory;
+  /** The drop counts in the table, with their totals. */
+  private Inventory.Drops drops;
   private Map<ItemStack, Integer> itemStackToRowIndex = new HashMap<>();
 
   // Ui elements
@@ -202,6 +210,7 @@ public class Ui {
   private final JLabel totalInventorySellValueLabel;
   private final JLabel totalInventoryWeightLabel;
   private final JLabel overencumberanceLabel;
+  private final JLabel weightAfterDropsLabel;
 
   private final JButton openSaveButton;
   private final JButton autoDropsButton;
@@ -211,9 +220,9 @@ public class Ui {
 
   private JDialog undroppablesDialog;
 
-  public Ui(Settings settings, Database database, DirectoryWatcher directoryWatcher) {
+  public Ui(Settings settings, DatabaseCache databases, DirectoryWatcher directoryWatcher) {
     
-    this.database = database;
+    this.databases = databases;
     this.directoryWatcher = directoryWatcher;
     this.settings = settings;
 
@@ -236,16 +245,23 @@ public class Ui {
       fileChooser.setDialogTitle("Select Save");
       int ret = fileChooser.showOpenDialog(frame);
       if (ret == JFileChooser.APPROVE_OPTION) {
-        SaveFile saveFile;
-        Game game;
-        try {
-          saveFile = SaveFile.load(fileChooser.getSelectedFile());
-          game = new Game(saveFile);
-        } catch (Exception e1) {
-          e1.printStackTrace();
-          return;
-        }
-        setGame(game, false);
+        File file = fileChooser.getSelectedFile();
+        // A new load order's database reads every plugin, so the save is
+        // loaded off the event thread.
+        new Thread(() -> {
+          Game game;
+          Database database;
+          try {
+            // Only the player's records are needed.
+            SaveFile saveFile = SaveFile.loadLazy(file, LoadMode.HEAP, Validation.STRICT);
+            game = new Game(saveFile);
+            database = databases.get(saveFile);
+          } catch (Exception e1) {
+            e1.printStackTrace();
+            return;
+          }
+          SwingUtilities.invokeLater(() -> setGame(game, database, false));
+        }, "Open Save").start();
       }
     });
 
@@ -317,6 +333,7 @@ public class Ui {
     playerMaxCarryWeightLabel = new JLabel();
     totalInventoryWeightLabel = new JLabel();
     overencumberanceLabel = new JLabel();    
+    weightAfterDropsLabel = new JLabel();
 
     infoBox.add(new JLabel("Total Inventory Sell Value: "));
     infoBox.add(totalInventorySellValueLabel);
@@ -330,6 +347,9 @@ public class Ui {
     infoBox.add(new JLabel("Overencumberance: " + ""));
     infoBox.add(overencumberanceLabel);
 
+    infoBox.add(new JLabel("Weight After Drops: "));
+    infoBox.add(weightAfterDropsLabel);
+
     // Auto controls box
     Box autoBox = Box.createVerticalBox();
     autoBox.setBorder(BorderFactory.createTitledBorder("Auto Drops"));
@@ -494,11 +514,21 @@ public class Ui {
     });
 
     table.getModel().addTableModelListener(e -> {
-      Set<Integer> pinnedFormIds = rows.stream()
+      // A drop count edited in the table. Whole table updates don't edit
+      // drop counts, calculateDrops() keeps drops in step itself.
+      if (drops != null && e.getType() == TableModelEvent.UPDATE
+          && e.getFirstRow() == e.getLastRow() && e.getFirstRow() >= 0
+          && e.getFirstRow() < rows.size()) {
+        Integer dropCount = rows.get(e.getFirstRow()).dropCount;
+        drops.setDropCount(e.getFirstRow(), dropCount == null ? 0 : dropCount);
+        weightAfterDropsLabel.setText(drops.getRemainingWeight() + "");
+      }
+
+      Set<Long> pinnedKeys = rows.stream()
           .filter(r -> r.pinned != null && r.pinned)
-          .map(r -> r.formId)
+          .map(r -> r.backingItemStack.formKey)
           .collect(toSet());
-      if (settings.setPinnedFormIds(pinnedFormIds)) {
+      if (settings.setPinnedKeys(pinnedKeys)) {
         // only save if changed because the table changes a lot.
         settings.save();
       }
@@ -553,7 +583,17 @@ public class Ui {
   }
   
   private void calculateDrops() {
-    Set<Integer> pinnedFormIds = settings.getPinnedFormIds();
+    Set<Long> pinnedKeys = settings.getPinnedKeys();
+
+    // The items that are never dropped, as they're numbered in this save.
+    LoadOrder loadOrder = game.getSave().loadOrder;
+    Set<Integer> fixedFormIds = new HashSet<>();
+    for (long key : PINNED_ITEMS) {
+      int formId = loadOrder.toFormId(key);
+      if (formId != -1) {
+        fixedFormIds.add(formId);
+      }
+    }
 
     int targetWeight;
     try {
@@ -565,24 +605,27 @@ public class Ui {
     List<Drop> drops = Analysis.optimizeDrops(
         inventory,
         targetWeight,
-        PINNED_ITEMS,
+        fixedFormIds,
         e -> (!e.equipped || settings.dropEquippedItems) &&
              (e.hotkey == null || settings.dropHotkeyedItems) &&
-             (!pinnedFormIds.contains(e.formId) || settings.dropPinnedItems));
+             (!pinnedKeys.contains(e.formKey) || settings.dropPinnedItems));
 
     table.getSelectionModel().clearSelection();
     for (Row row : rows) {
       row.dropCount = null;
     }
+    this.drops.clear();
     updateTable();
 
     for (Drop drop : drops) {
       int modelRowIndex = itemStackToRowIndex.get(drop.itemStack);
       Row row = rows.get(modelRowIndex);
       row.dropCount = drop.count;
+      this.drops.setDropCount(modelRowIndex, drop.count);
       int viewRowIndex = table.convertRowIndexToView(modelRowIndex);
       table.getSelectionModel().addSelectionInterval(viewRowIndex, viewRowIndex);
     }
+    weightAfterDropsLabel.setText(this.drops.getRemainingWeight() + "");
   }
   
   private void generateDropScript() {
@@ -645,10 +688,23 @@ public class Ui {
     frame.setVisible(true);
   }
 
-  public void setGame(Game game, boolean maybeGenerateDropScript) {
+  /**
+   * Shows the game, with the items of its load order from
+   * {@link DatabaseCache#get(SaveFile)}. Call on the event thread.
+   */
+  public void setGame(Game game, Database database, boolean maybeGenerateDropScript) {
 
+    Game previous = this.game;
     this.game = game;
+    this.database = database;
     this.inventory = game.getPlayerInventory(database);
+    this.drops = inventory.newDrops();
+
+    // Nothing refers to the previous save anymore, so its buffer can be
+    // reused for the next one.
+    if (previous != null && previous != game) {
+      previous.release();
+    }
 
     updateTableRows();
     updateTable();
@@ -674,23 +730,21 @@ public class Ui {
   }
 
   private void updateInventoryInfoLabels() {
-    double totalInventoryWeight = rows.stream().mapToDouble(r -> r.totalWeight).sum();
-    int totalInventorySellValue = rows.stream()
-        .filter(r -> r.formId != BOTTLE_CAPS_FORM_ID)
-        .mapToInt(r -> r.totalSellValue)
-        .sum();
+    float totalInventoryWeight = inventory.getTotalWeight();
+    int totalInventorySellValue = inventory.getTotalSellValue();
 
     totalInventorySellValueLabel.setText(totalInventorySellValue + "");
     totalInventoryWeightLabel.setText(totalInventoryWeight + "");
     playerMaxCarryWeightLabel.setText(game.getCarryWeight() + "");
     overencumberanceLabel.setText((totalInventoryWeight - game.getCarryWeight()) + "");
+    weightAfterDropsLabel.setText(drops.getRemainingWeight() + "");
   }
   
   private void updateTableRows() {
     rows.clear();
     itemStackToRowIndex.clear();
 
-    Set<Integer> pinnedFormIds = new HashSet<>(settings.getPinnedFormIds());
+    Set<Long> pinnedKeys = settings.getPinnedKeys();
 
     for (int i = 0; i < inventory.getInventory().size(); i++) {
 
@@ -702,7 +756,7 @@ public class Ui {
       
       row.backingItemStack = entry;
 
-      boolean pinned = pinnedFormIds.contains(entry.formId) || PINNED_ITEMS.contains(entry.formId);
+      boolean pinned = pinnedKeys.contains(entry.formKey) || PINNED_ITEMS.contains(entry.formKey);
       
       row.inventoryIndex = entry.inventoryIndex;
       row.formId = entry.formId;
@@ -732,24 +786,15 @@ public class Ui {
   }
   
   private void updateWeightChart() {
-    updateChart(weightChartPanel, 
-        inventory.getInventory().stream()
-            .filter(i -> i.weight > 0)
-            .collect(toMap(i -> i.formId, i -> i.count * i.weight, Float::sum)));
+    updateChart(weightChartPanel, inventory.getWeightByFormId());
   }
   
   private void updateValueChart() {
-    updateChart(valueChartPanel,
-        inventory.getInventory().stream()
-            .filter(i -> i.sellValue > 0 && i.formId != BOTTLE_CAPS_FORM_ID)
-              .collect(toMap(i -> i.formId, i -> i.count * i.sellValue, Integer::sum)));
+    updateChart(valueChartPanel, inventory.getSellValueByFormId());
   }
 
   private void updateValueExclWeightlessChart() {
-    updateChart(valueExclWeightlessChartPanel,
-        inventory.getInventory().stream()
-            .filter(i -> i.sellValue > 0 && i.formId != BOTTLE_CAPS_FORM_ID && i.weight > 0)
-              .collect(toMap(i -> i.formId, i -> i.count * i.sellValue, Integer::sum)));
+    updateChart(valueExclWeightlessChartPanel, inventory.getSellValueOfWeightedByFormId());
   }  
   
   private void updateChart(ChartPanel chartPanel, Map<Integer, ? extends Number> data) {
@@ -776,7 +821,7 @@ public class Ui {
     plot.setLabelGenerator(new PieSectionLabelGenerator() {
       @Override
       public String generateSectionLabel(PieDataset dataset, Comparable key) {
-        return database.get((Integer) key).description;
+        return database.get(game.getSave().loadOrder, (Integer) key).description;
       }
       
       @Override
@@ -789,7 +834,7 @@ public class Ui {
       @Override
       protected Object[] createItemArray(PieDataset dataset, Comparable key) {
         Object[] array = super.createItemArray(dataset, key);
-        array[0] = database.get((Integer) key).description;
+        array[0] = database.get(game.getSave().loadOrder, (Integer) key).description;
         return array;
       }
     });
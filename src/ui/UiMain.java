@@ -4,14 +4,25 @@ import game.Database;
 import game.Game;
 
 import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
 
+import save.BufferPool;
+import save.Fo3ByteBuffer.LoadMode;
+import save.Fo3ByteBuffer.Validation;
+import save.IncrementalSaveLoader;
 import save.SaveFile;
-import static java.util.Comparator.comparing;
+import ui.DirectoryWatcher.EventType;
 
 
 public class UiMain {
@@ -60,6 +71,12 @@ public class UiMain {
       settings.save();
     }
 
+    // Older versions saved the path of Fallout3.exe rather than its directory.
+    if (new File(settings.fallout3Directory).isFile()) {
+      settings.fallout3Directory = new File(settings.fallout3Directory).getParent();
+      settings.save();
+    }
+
     if (settings.savesDirectory == null || !new File(settings.savesDirectory).exists()) {
 
       settings.savesDirectory = Fo3LocationHueristics.guessFallout3SavesDirectory();
@@ -89,30 +106,84 @@ public class UiMain {
 
     File savesDirectory = new File(settings.savesDirectory);
 
-    File newestSave = Arrays.asList(savesDirectory.listFiles(f -> f.getName().endsWith(".fos")))
-        .stream()
-        .max(comparing(f -> f.lastModified()))
+    // Only looks at the headers, so saves that are corrupt or still being
+    // written are skipped.
+    File newestSave = SaveFile.scanHeaders(savesDirectory.toPath()).stream()
+        .findFirst()
+        .map(s -> s.path.toFile())
         .orElse(null);
 
-    Database database = Database.load();
+    SaveFile newestSaveFile = newestSave == null
+        ? null
+        : SaveFile.loadLazy(newestSave, LoadMode.HEAP, Validation.STRICT);
+
+    // Each save's items are read from the plugins of its own load order.
+    DatabaseCache databases = new DatabaseCache(
+        new File(settings.fallout3Directory, "Data"), new File("."), Database.load());
     DirectoryWatcher directoryWatcher = new DirectoryWatcher();
 
-    Ui ui = new Ui(settings, database, directoryWatcher);
+    Ui ui = new Ui(settings, databases, directoryWatcher);
  
-    if (newestSave != null) {      
-      SaveFile saveFile = SaveFile.load(newestSave);
-      Game game = new Game(saveFile);
-      SwingUtilities.invokeLater(() -> ui.setGame(game, false));
+    if (newestSaveFile != null) {
+      Game game = new Game(newestSaveFile);
+      Database database = databases.get(newestSaveFile);
+      SwingUtilities.invokeLater(() -> ui.setGame(game, database, false));
     }
     ui.show();
 
+    // Saves that are being written, or have been loaded, by path. Only
+    // touched by the directory watcher's thread.
+    Map<Path, IncrementalSaveLoader> loaders = new HashMap<>();
+    // When each completely loaded save was last modified.
+    Map<Path, FileTime> loadedTimes = new HashMap<>();
+
+    // Reloads reuse the buffers of saves the Ui is done with.
+    BufferPool bufferPool = new BufferPool(false, 2);
+
     directoryWatcher.add(savesDirectory.toPath(), (p, e) -> {
       if (p.getFileName().toString().endsWith(".fos")) {
         try {
-          SaveFile saveFile = SaveFile.load(p.toFile());
-          Game game = new Game(saveFile);
-          SwingUtilities.invokeLater(() -> ui.setGame(game, true));
+          IncrementalSaveLoader loader = loaders.get(p);
+          long size = Files.size(p);
+          FileTime modified = Files.getLastModifiedTime(p);
+
+          if (loader != null && loader.isComplete() && size == loader.bytesReceived()
+              && modified.equals(loadedTimes.get(p))) {
+            // Already loaded, the game is just touching the file. Overwriting
+            // a save with one of the same size changes the time.
+            return;
+          }
+          if (loader == null || loader.isComplete() || e == EventType.CREATED
+              || size < loader.bytesReceived()) {
+            // Reloads happen on every save the game writes, so skip the
+            // per-value checks. "Open Save" still loads strictly.
+            if (loader != null) {
+              loader.release();
+            }
+            loader = new IncrementalSaveLoader(p.toFile(), Validation.TRUSTED, bufferPool);
+            loaders.put(p, loader);
+          }
+
+          // Parse whatever the game has written since the last event, so the
+          // save is ready as soon as the game finishes writing it.
+          try (FileChannel channel = FileChannel.open(p, StandardOpenOption.READ)) {
+            if (!loader.update(channel)) {
+              return;
+            }
+          }
+          loadedTimes.put(p, modified);
+
+          Game game = new Game(loader.getSaveFile());
+          // A new load order's database is read here rather than on the
+          // event thread.
+          Database database = databases.get(loader.getSaveFile());
+          SwingUtilities.invokeLater(() -> ui.setGame(game, database, true));
         } catch (Exception ex) {
+          IncrementalSaveLoader loader = loaders.remove(p);
+          loadedTimes.remove(p);
+          if (loader != null) {
+            loader.release();
+          }
           ex.printStackTrace();
         }
       }
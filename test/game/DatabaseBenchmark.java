@@ -0,0 +1,101 @@
+package game;
+
+import game.Database.ItemData;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Times item lookups by form id, the way the chart labels and tooltips do
+ * them on every repaint: the boxed HashMap the database used to be, a
+ * binary search of the mapped items.bin that decodes an ItemData each time,
+ * and {@link Database#get(int)}.
+ *
+ * Looks up 10,000 random form ids from items.txt, about 10% of them misses,
+ * and reports the best of 10 runs after warm-up. Run from the project
+ * directory, where it compiles items.bin if needed, on a HotSpot JVM, which
+ * counts allocated bytes per thread.
+ */
+public class DatabaseBenchmark {
+
+  private static final int LOOKUPS = 10_000;
+  private static final int WARM_UP = 20;
+  private static final int RUNS = 10;
+  private static final int PASSES_PER_RUN = 100;
+
+  private interface Lookup {
+    ItemData get(int formId);
+  }
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private static long sink;
+
+  public static void main(String[] args) throws Exception {
+    List<ItemData> items = Database.readText(new File("items.txt"));
+
+    Random random = new Random(1);
+    int[] formIds = new int[LOOKUPS];
+    for (int i = 0; i < formIds.length; i++) {
+      formIds[i] = random.nextInt(10) == 0
+          ? random.nextInt()
+          : items.get(random.nextInt(items.size())).formId;
+    }
+
+    Map<Integer, ItemData> byFormId = new HashMap<>();
+    for (ItemData item : items) {
+      byFormId.put(item.formId, item);
+    }
+    ItemDatabaseFile file = ItemDatabaseFile.wrap(ItemDatabaseFile.compile(items));
+    Database database = Database.load();
+
+    System.out.printf("%d items, %d lookups%n", items.size(), LOOKUPS);
+    run("HashMap<Integer, ItemData>", formIds, formId -> {
+      ItemData item = byFormId.get(formId);
+      return item == null ? Database.UNKNOWN_ITEM : item;
+    });
+    run("binary search + decode", formIds, formId -> {
+      int row = file.find(formId);
+      return row < 0 ? Database.UNKNOWN_ITEM : file.getItemData(row);
+    });
+    run("Database.get", formIds, database::get);
+  }
+
+  private static void run(String name, int[] formIds, Lookup lookup) {
+    for (int i = 0; i < WARM_UP; i++) {
+      pass(formIds, lookup);
+    }
+
+    long thread = Thread.currentThread().getId();
+    long bestNanos = Long.MAX_VALUE;
+    long bestBytes = 0;
+    for (int run = 0; run < RUNS; run++) {
+      long bytes = THREADS.getThreadAllocatedBytes(thread);
+      long start = System.nanoTime();
+      for (int i = 0; i < PASSES_PER_RUN; i++) {
+        pass(formIds, lookup);
+      }
+      long nanos = System.nanoTime() - start;
+      bytes = THREADS.getThreadAllocatedBytes(thread) - bytes;
+      if (nanos < bestNanos) {
+        bestNanos = nanos;
+        bestBytes = bytes;
+      }
+    }
+
+    double lookups = (double) PASSES_PER_RUN * formIds.length;
+    System.out.printf("%-28s %7.1f ns/lookup %7.1f B/lookup%n",
+        name, bestNanos / lookups, bestBytes / lookups);
+  }
+
+  private static void pass(int[] formIds, Lookup lookup) {
+    for (int formId : formIds) {
+      sink += lookup.get(formId).baseValue;
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package plugin;
+
+import game.Database.ItemData;
+import game.ItemDatabaseFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static plugin.TestPlugins.COMPRESSED;
+import static plugin.TestPlugins.DELETED;
+import static plugin.TestPlugins.group;
+import static plugin.TestPlugins.record;
+import static plugin.TestPlugins.subrecord;
+import static plugin.TestPlugins.values;
+import static plugin.TestPlugins.zstring;
+import static save.TestSaves.check;
+
+/**
+ * Reads the items of a synthetic .esm and an .esp that overrides one of
+ * them, each item type's record, and the form ids they get in a load order.
+ */
+public class PluginItemsTest {
+
+  /** Longer than a subrecord's 2 byte size, so it comes after an XXXX. */
+  private static final String LONG_NAME = String.join("", Collections.nCopies(7000, "Long name "));
+
+  public static void main(String[] args) throws Exception {
+    File directory = Files.createTempDirectory("plugin-items-test").toFile();
+    try {
+      File esm = new File(directory, "Test.esm");
+      File esp = new File(directory, "Test.esp");
+      TestPlugins.write(esm, writeEsm());
+      TestPlugins.write(esp, writeEsp());
+
+      readEachType(esm);
+      readMasters(esp);
+      readLoadOrder(directory);
+    } finally {
+      for (File file : directory.listFiles()) {
+        file.delete();
+      }
+      directory.delete();
+    }
+    System.out.println("PluginItemsTest passed");
+  }
+
+  private static void readEachType(File esm) throws IOException {
+    PluginFile plugin = PluginFile.open(esm);
+    check(plugin.getMasters().isEmpty(), "masters " + plugin.getMasters());
+
+    // Not the NPC_ group or the group nested in WEAP.
+    int[] offsets = plugin.indexItems();
+    check(offsets.length == 7, offsets.length + " item records");
+
+    Map<Integer, ItemData> items = new HashMap<>();
+    for (int offset : offsets) {
+      ItemData item = plugin.readItem(offset);
+      if (item != null) {
+        items.put(item.formId, item);
+      }
+    }
+    check(items.size() == 6 && !items.containsKey(0x000802),
+        "read " + items.keySet() + ", the deleted record should be left out");
+
+    checkItem(items.get(0x000801), "WEAP", "Rifle", 100, 7.5f, 250);
+    // Compressed
+    checkItem(items.get(0x000803), "ARMO", "Armor", 50, 15, 100);
+    checkItem(items.get(0x000804), "ALCH", "Stimpak", 25, 0.5f, null);
+    checkItem(items.get(0x000805), "MISC", LONG_NAME, 5, 1, null);
+    checkItem(items.get(0x000806), "AMMO", "Rounds", 2, 0, null);
+    checkItem(items.get(0x000807), "KEYM", "Key", 0, 0, null);
+  }
+
+  private static void readMasters(File esp) throws IOException {
+    PluginFile plugin = PluginFile.open(esp);
+    check(plugin.getMasters().equals(Arrays.asList("Test.esm", "Absent.esm")),
+        "masters " + plugin.getMasters());
+  }
+
+  /**
+   * The .esm is second in the load order, after a plugin that isn't there,
+   * and the .esp third.
+   */
+  private static void readLoadOrder(File directory) throws IOException {
+    List<String> loadOrder = Arrays.asList("Missing.esm", "Test.esm", "Test.esp");
+
+    for (int pass = 0; pass < 2; pass++) {
+      // Compiled from the plugins, then mapped from the cache.
+      ItemDatabaseFile items = PluginItems.load(directory, loadOrder, directory);
+      String at = pass == 0 ? "compiled: " : "cached: ";
+
+      check(items.size() == 7, at + items.size() + " items");
+      // Overridden by the .esp, which is later in the load order.
+      checkItem(item(items, 0x0100_0801, at), "WEAP", "Modded Rifle", 150, 7.5f, 250);
+      checkItem(item(items, 0x0100_0803, at), "ARMO", "Armor", 50, 15, 100);
+      checkItem(item(items, 0x0100_0807, at), "KEYM", "Key", 0, 0, null);
+      // The .esp's own item.
+      checkItem(item(items, 0x0200_0901, at), "WEAP", "Pistol", 80, 2, 100);
+      // The .esp's item from a master that isn't loaded.
+      check(items.find(0x0100_0900) == -1 && items.find(0x0200_0900) == -1,
+          at + "item from a missing master");
+      check(items.find(0x0100_0802) == -1, at + "deleted item");
+    }
+  }
+
+  private static ItemData item(ItemDatabaseFile items, int formId, String at) {
+    int row = items.find(formId);
+    check(row != -1, String.format("%sno item 0x%08X", at, formId));
+    return items.getItemData(row);
+  }
+
+  private static void checkItem(ItemData item, String type, String name, int value,
+      float weight, Integer maxCondition) {
+    String at = String.format("0x%08X: ", item.formId);
+    check(item.signature.equals(type), at + "type " + item.signature);
+    check(item.description.equals(name), at + "name " + item.description.length() + " chars");
+    check(item.baseValue == value, at + "value " + item.baseValue);
+    check(item.weight == weight, at + "weight " + item.weight);
+    check(maxCondition == null ? item.maxCondition == null : maxCondition.equals(item.maxCondition),
+        at + "max condition " + item.maxCondition);
+  }
+
+  private static byte[] writeEsm() {
+    return TestPlugins.plugin(Collections.emptyList(),
+        group("WEAP",
+            // value, health, weight, damage, clip size
+            record("WEAP", 0x000801, 0, subrecord("FULL", zstring("Rifle")),
+                subrecord("DATA", values(100, 250, 7.5f, 20, 24))),
+            record("WEAP", 0x000802, DELETED),
+            group("WEAP", record("WEAP", 0x000808, 0, subrecord("FULL", zstring("Nested")),
+                subrecord("DATA", values(1, 1, 1f, 1, 1))))),
+        group("NPC_",
+            record("NPC_", 0x000809, 0, subrecord("FULL", zstring("Not an item")))),
+        group("ARMO",
+            // value, health, weight
+            record("ARMO", 0x000803, COMPRESSED, subrecord("FULL", zstring("Armor")),
+                subrecord("DATA", values(50, 100, 15f)))),
+        group("ALCH",
+            // The weight, and the value first in ENIT.
+            record("ALCH", 0x000804, 0, subrecord("FULL", zstring("Stimpak")),
+                subrecord("DATA", values(0.5f)), subrecord("ENIT", values(25, 0, 0, 0f)))),
+        group("MISC",
+            // value, weight
+            record("MISC", 0x000805, 0, subrecord("FULL", zstring(LONG_NAME)),
+                subrecord("DATA", values(5, 1f)))),
+        group("AMMO",
+            // speed, flags and 3 unused bytes, value, clip rounds
+            record("AMMO", 0x000806, 0, subrecord("FULL", zstring("Rounds")),
+                subrecord("DATA", values(1.5f, (byte) 0, (byte) 0, (byte) 0, (byte) 0, 2,
+                    (byte) 10)))),
+        group("KEYM",
+            record("KEYM", 0x000807, 0, subrecord("FULL", zstring("Key")),
+                subrecord("DATA", values(0, 0f)))));
+  }
+
+  private static byte[] writeEsp() {
+    return TestPlugins.plugin(Arrays.asList("Test.esm", "Absent.esm"),
+        group("WEAP",
+            // Test.esm's rifle.
+            record("WEAP", 0x0000_0801, 0, subrecord("FULL", zstring("Modded Rifle")),
+                subrecord("DATA", values(150, 250, 7.5f, 25, 24))),
+            // From Absent.esm.
+            record("WEAP", 0x0100_0900, 0, subrecord("FULL", zstring("Absent")),
+                subrecord("DATA", values(1, 1, 1f, 1, 1))),
+            record("WEAP", 0x0200_0901, 0, subrecord("FULL", zstring("Pistol")),
+                subrecord("DATA", values(80, 100, 2f, 10, 8)))));
+  }
+}
@@ -0,0 +1,150 @@
+package plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import save.Fo3Strings;
+
+/**
+ * Writes small synthetic plugins for the tests, laid out the way
+ * {@link PluginFile} reads them: a TES4 record with the masters, then top
+ * level groups of records made of subrecords.
+ */
+public class TestPlugins {
+
+  /** Record flags */
+  public static final int DELETED = 0x0000_0020;
+  public static final int COMPRESSED = 0x0004_0000;
+
+  private static final int HEADER_SIZE = 24;
+
+  private TestPlugins() {
+  }
+
+  /** A plugin with the given masters and top level groups. */
+  public static byte[] plugin(List<String> masters, byte[]... groups) {
+    ByteArrayOutputStream header = new ByteArrayOutputStream();
+    write(header, subrecord("HEDR", values(0.94f, 0, 0x800)));
+    for (String master : masters) {
+      write(header, subrecord("MAST", zstring(master)));
+      write(header, subrecord("DATA", values(0, 0)));
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    write(out, record("TES4", 0, 0, header.toByteArray()));
+    for (byte[] group : groups) {
+      write(out, group);
+    }
+    return out.toByteArray();
+  }
+
+  /** A group of records, or of other groups, labeled with their type. */
+  public static byte[] group(String label, byte[]... records) {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    for (byte[] record : records) {
+      write(body, record);
+    }
+    ByteBuffer header = header("GRUP", HEADER_SIZE + body.size());
+    header.put(label.getBytes(Fo3Strings.CHARSET));
+    return concat(header.array(), body.toByteArray());
+  }
+
+  /**
+   * A record made of the given subrecords, compressed if the flags say so.
+   */
+  public static byte[] record(String type, int formId, int flags, byte[]... subrecords) {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    for (byte[] subrecord : subrecords) {
+      write(body, subrecord);
+    }
+    byte[] data = body.toByteArray();
+    if ((flags & COMPRESSED) != 0) {
+      data = compress(data);
+    }
+    ByteBuffer header = header(type, data.length);
+    header.putInt(flags).putInt(formId);
+    return concat(header.array(), data);
+  }
+
+  /**
+   * A subrecord, after an XXXX subrecord with its size if it's too large for
+   * the 2 byte size.
+   */
+  public static byte[] subrecord(String type, byte[] data) {
+    if (data.length > 0xFFFF) {
+      return concat(subrecord("XXXX", values(data.length)), subrecord(type, 0, data));
+    }
+    return subrecord(type, data.length, data);
+  }
+
+  private static byte[] subrecord(String type, int size, byte[] data) {
+    ByteBuffer header = ByteBuffer.allocate(6).order(ByteOrder.LITTLE_ENDIAN);
+    header.put(type.getBytes(Fo3Strings.CHARSET)).putShort((short) size);
+    return concat(header.array(), data);
+  }
+
+  public static byte[] zstring(String s) {
+    return concat(s.getBytes(Fo3Strings.CHARSET), new byte[1]);
+  }
+
+  /** Integers, floats and bytes, little-endian. */
+  public static byte[] values(Object... values) {
+    ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+    for (Object value : values) {
+      if (value instanceof Integer) {
+        buffer.putInt((Integer) value);
+      } else if (value instanceof Float) {
+        buffer.putFloat((Float) value);
+      } else {
+        buffer.put((Byte) value);
+      }
+    }
+    byte[] bytes = new byte[buffer.position()];
+    buffer.flip();
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  public static void write(File file, byte[] plugin) throws IOException {
+    Files.write(file.toPath(), plugin);
+  }
+
+  /** The decompressed size, then the zlib stream. */
+  private static byte[] compress(byte[] data) {
+    Deflater deflater = new Deflater();
+    deflater.setInput(data);
+    deflater.finish();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    write(out, values(data.length));
+    byte[] buffer = new byte[256];
+    while (!deflater.finished()) {
+      out.write(buffer, 0, deflater.deflate(buffer));
+    }
+    deflater.end();
+    return out.toByteArray();
+  }
+
+  /** A record or group header, with the type and size filled in. */
+  private static ByteBuffer header(String type, int size) {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    header.put(type.getBytes(Fo3Strings.CHARSET)).putInt(size);
+    return header;
+  }
+
+  private static byte[] concat(byte[] a, byte[] b) {
+    byte[] both = new byte[a.length + b.length];
+    System.arraycopy(a, 0, both, 0, a.length);
+    System.arraycopy(b, 0, both, a.length, b.length);
+    return both;
+  }
+
+  private static void write(ByteArrayOutputStream out, byte[] bytes) {
+    out.write(bytes, 0, bytes.length);
+  }
+}
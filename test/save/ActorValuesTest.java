@@ -0,0 +1,49 @@
+package save;
+
+import java.util.Map;
+
+import static save.TestSaves.check;
+
+/**
+ * Reads the player's actor values from a test save, see
+ * {@link TestSaves#ACTOR_VALUES}.
+ */
+public class ActorValuesTest {
+
+  private static final int PLAYER_FORM_ID = 0x14;
+
+  public static void main(String[] args) throws Exception {
+    SaveFile saveFile = TestSaves.write(0).load();
+    PlayerACHRFormChangeRecord player =
+        PlayerACHRFormChangeRecord.parseFrom(saveFile.getFormChangeRecord(PLAYER_FORM_ID));
+    ActorValues actorValues = player.actorValues;
+
+    check(player.experience == 1234, "experience " + player.experience);
+    check(actorValues.getModifier(ActorValue.STRENGTH) == 3, "strength");
+
+    Map<ActorValue, Float> skills = actorValues.getSkillModifiers();
+    check(skills.size() == ActorValue.skills().length, "skills " + skills.keySet());
+    check(skills.get(ActorValue.SMALL_GUNS) == 8, "small guns " + skills);
+    check(skills.get(ActorValue.SNEAK) == 0, "sneak " + skills);
+    check(!skills.containsKey(ActorValue.STRENGTH), "strength is a skill");
+
+    Map<ActorValue, Float> resistances = actorValues.getResistanceModifiers();
+    check(resistances.get(ActorValue.FIRE_RESIST) == 10, "fire resistance " + resistances);
+    check(resistances.get(ActorValue.RAD_RESIST) == 0, "radiation resistance " + resistances);
+
+    // 150 + 10 per point of strength, and 50 from carry weight itself.
+    int carryWeight = actorValues.getCarryWeight(TestSaves.BASE_STRENGTH);
+    check(carryWeight == 150 + (TestSaves.BASE_STRENGTH + 3) * 10 + 50,
+        "carry weight " + carryWeight);
+
+    saveFile.release();
+    try {
+      actorValues.getModifier(ActorValue.STRENGTH);
+      throw new AssertionError("read the actor values of a released save");
+    } catch (IllegalStateException expected) {
+      // The bytes may belong to another save by now.
+    }
+
+    System.out.println("ActorValuesTest passed");
+  }
+}
@@ -0,0 +1,96 @@
+package save;
+
+import java.util.Arrays;
+import java.util.List;
+
+import save.RawInventory.RawInventoryEntry;
+import save.RawInventory.RawInventoryEntry.RawItemInfo;
+
+import static save.TestSaves.check;
+
+/**
+ * Decodes the player's inventory as a {@link RawInventory} and as a
+ * {@link CompactInventory} and checks they hold the same values.
+ */
+public class CompactInventoryTest {
+
+  private static final int PLAYER_FORM_ID = 0x14;
+
+  public static void main(String[] args) throws Exception {
+    SaveFile saveFile = TestSaves.write(0).load();
+    FormChangeRecord player = saveFile.getFormChangeRecord(PLAYER_FORM_ID);
+
+    RawInventory raw = PlayerACHRFormChangeRecord.parseFrom(player).inventory;
+    CompactInventory compact = CompactInventory.loadPlayerInventory(player);
+
+    check(raw.getEntries().size() == 4, "test save has " + raw.getEntries().size() + " entries");
+    checkSame(raw, compact);
+    System.out.println("CompactInventoryTest passed");
+  }
+
+  private static void checkSame(RawInventory raw, CompactInventory compact) {
+    List<RawInventoryEntry> entries = raw.getEntries();
+    check(compact.getEntryCount() == entries.size(), "entry count " + compact.getEntryCount());
+
+    int itemInfos = 0;
+    for (int e = 0; e < entries.size(); e++) {
+      RawInventoryEntry entry = entries.get(e);
+      String at = "entry " + e;
+      check(compact.getFormIdIndex(e) == entry.formIdIndex, at + " form id index");
+      check(compact.getCount(e) == entry.count, at + " count");
+      check(compact.getEndItemInfo(e) - compact.getFirstItemInfo(e) == entry.itemInfos.size(),
+          at + " item info count");
+
+      for (int i = 0; i < entry.itemInfos.size(); i++) {
+        checkSame(entry.itemInfos.get(i), compact, compact.getFirstItemInfo(e) + i,
+            at + " item info " + i);
+        itemInfos++;
+      }
+    }
+    check(compact.getItemInfoCount() == itemInfos, "item info count " + compact.getItemInfoCount());
+    check(Arrays.equals(compact.getPackedFormIdIndexes(), raw.getPackedFormIdIndexes()),
+        "packed form id indexes");
+  }
+
+  private static void checkSame(RawItemInfo raw, CompactInventory compact, int itemInfo,
+      String at) {
+
+    check(compact.getItemInfoItemCount(itemInfo) == raw.getCount(), at + " count");
+
+    Float condition = raw.getCondition();
+    check(compact.hasCondition(itemInfo) == (condition != null), at + " has condition");
+    if (condition != null) {
+      check(compact.getCondition(itemInfo) == condition, at + " condition");
+    }
+
+    check(compact.isEquipped(itemInfo) == raw.getEquipped(), at + " equipped");
+
+    Integer hotkey = raw.getHotkey();
+    check(compact.hasHotkey(itemInfo) == (hotkey != null), at + " has hotkey");
+    if (hotkey != null) {
+      check(compact.getHotkey(itemInfo) == hotkey, at + " hotkey");
+    }
+
+    check(compact.getOwnerFormIdIndex(itemInfo) == raw.getPackedOwnerFormIdIndex(),
+        at + " owner");
+    check(compact.getScriptFormIdIndex(itemInfo) == raw.getPackedScriptFormIdIndex(),
+        at + " script");
+
+    List<FormIdIndex> unknown1 = raw.getUnknown1();
+    int[] compactUnknown1 = compact.getUnknown1(itemInfo);
+    check(compactUnknown1.length == unknown1.size(), at + " unknown1 size");
+    for (int i = 0; i < compactUnknown1.length; i++) {
+      check(compactUnknown1[i] == unknown1.get(i).formIdIndex, at + " unknown1 " + i);
+    }
+
+    List<Float> unknown2 = raw.getUnknown2();
+    float[] compactUnknown2 = compact.getUnknown2(itemInfo);
+    check(compactUnknown2.length == unknown2.size(), at + " unknown2 size");
+    for (int i = 0; i < compactUnknown2.length; i++) {
+      check(compactUnknown2[i] == unknown2.get(i), at + " unknown2 " + i);
+    }
+
+    check(compact.getUnknown3(itemInfo) == Boolean.TRUE.equals(raw.getUnknown3()),
+        at + " unknown3");
+  }
+}
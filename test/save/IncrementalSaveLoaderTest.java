@@ -0,0 +1,133 @@
+package save;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+import save.Fo3ByteBuffer.Validation;
+import save.SaveFile.LoadException;
+import save.TestSaves.TestSave;
+
+import static save.TestSaves.check;
+
+/**
+ * Feeds synthetic saves to an {@link IncrementalSaveLoader} the way the game
+ * writes them.
+ */
+public class IncrementalSaveLoaderTest {
+
+  private static final File FILE = new File("test.fos");
+
+  public static void main(String[] args) throws Exception {
+    for (Validation validation : Validation.values()) {
+      fileLocationsWrittenLast(validation);
+      oneByteAtATime(validation);
+    }
+    System.out.println("IncrementalSaveLoaderTest passed");
+  }
+
+  /**
+   * The game writes the whole file with the table zeroed and fills it in at
+   * the end, without the file growing.
+   */
+  private static void fileLocationsWrittenLast(Validation validation)
+      throws IOException, LoadException {
+    TestSave save = TestSaves.write(100);
+    IncrementalSaveLoader loader = new IncrementalSaveLoader(FILE, validation);
+
+    check(!loader.update(new BytesChannel(save.withEmptyFileLocations())),
+        "loaded without the file locations");
+    check(loader.bytesReceived() <= save.fileLocationsPosition,
+        "kept the empty table: " + loader.bytesReceived());
+
+    check(loader.update(new BytesChannel(save.bytes)), "not loaded once the table is written");
+    checkLoaded(loader, save);
+  }
+
+  /**
+   * Every section is cut off at every byte, which must be waited out rather
+   * than failing the load, whatever the validation.
+   */
+  private static void oneByteAtATime(Validation validation) throws IOException, LoadException {
+    TestSave save = TestSaves.write(20);
+    IncrementalSaveLoader loader = new IncrementalSaveLoader(FILE, validation);
+
+    for (int size = 1; size < save.bytes.length; size++) {
+      byte[] written = new byte[size];
+      System.arraycopy(save.bytes, 0, written, 0, size);
+      check(!loader.update(new BytesChannel(written)), "loaded with only " + size + " bytes");
+    }
+    check(loader.update(new BytesChannel(save.bytes)), "not loaded with all the bytes");
+    checkLoaded(loader, save);
+  }
+
+  private static void checkLoaded(IncrementalSaveLoader loader, TestSave save)
+      throws LoadException {
+    SaveFile saveFile = loader.getSaveFile();
+    check(loader.bytesReceived() == save.bytes.length, "received " + loader.bytesReceived());
+    check(saveFile.getFormChangeRecordTable().size() == save.recordCount,
+        "records: " + saveFile.getFormChangeRecordTable().size());
+    check(saveFile.getFormIdTable().findFormIdByFormIdIndex(2) == 0x14,
+        "player form id index");
+    loader.release();
+  }
+
+  /** What's been written of a file so far. */
+  private static class BytesChannel implements SeekableByteChannel {
+
+    private final byte[] bytes;
+    private int position;
+
+    BytesChannel(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) {
+      if (position >= bytes.length) {
+        return -1;
+      }
+      int n = Math.min(dst.remaining(), bytes.length - position);
+      dst.put(bytes, position, n);
+      position += n;
+      return n;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+      throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() {
+      return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) {
+      position = (int) Math.min(newPosition, Integer.MAX_VALUE);
+      return this;
+    }
+
+    @Override
+    public long size() {
+      return bytes.length;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+      throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package save;
+
+import static save.TestSaves.check;
+
+/**
+ * Reads the karma in a test save's header, which is a lazy view of the
+ * save's bytes, before and after the save is released.
+ */
+public class LazyStringTest {
+
+  public static void main(String[] args) throws Exception {
+    SaveFile saveFile = TestSaves.write(0).load();
+    CharSequence karma = saveFile.header.karma;
+
+    check(karma instanceof Fo3Strings.LazyString, "karma is a " + karma.getClass());
+    check(karma.length() == 4 && karma.charAt(0) == 'G', "karma " + karma);
+    check(karma.toString().equals("Good"), "karma " + karma);
+    check(karma.subSequence(1, 3).toString().equals("oo"), "sub sequence");
+
+    saveFile.release();
+    for (Runnable read : new Runnable[] { () -> karma.charAt(0), () -> karma.toString() }) {
+      try {
+        read.run();
+        throw new AssertionError("read the karma of a released save");
+      } catch (IllegalStateException expected) {
+        // The bytes may belong to another save by now.
+      }
+    }
+
+    System.out.println("LazyStringTest passed");
+  }
+}
@@ -0,0 +1,56 @@
+package save;
+
+import java.util.Arrays;
+
+import static save.TestSaves.check;
+
+/**
+ * Resolves the same forms through load orders that number their plugins
+ * differently.
+ */
+public class LoadOrderTest {
+
+  public static void main(String[] args) {
+    LoadOrder anchorageFirst =
+        new LoadOrder(Arrays.asList("Fallout3.esm", "Anchorage.esm", "ThePitt.esm"));
+    LoadOrder pittFirst =
+        new LoadOrder(Arrays.asList("Fallout3.esm", "ThePitt.esm", "Anchorage.esm"));
+
+    // The same form from ThePitt.esm, at mod index 2 in one and 1 in the other.
+    long key = anchorageFirst.toKey(0x0200_1234);
+    check(key != LoadOrder.NO_KEY, "no key");
+    check(pittFirst.toKey(0x0100_1234) == key, "keys differ between the load orders");
+    check(pittFirst.toFormId(key) == 0x0100_1234,
+        String.format("resolved to 0x%08X", pittFirst.toFormId(key)));
+    check(anchorageFirst.toFormId(key) == 0x0200_1234, "didn't resolve back");
+    check(anchorageFirst.toKey(0x0100_1234) != key, "Anchorage's form has ThePitt's key");
+
+    // What's stored, e.g., for pinned items.
+    String stored = LoadOrder.keyToString(key);
+    check(stored.equals("ThePitt.esm:001234"), "stored as " + stored);
+    check(LoadOrder.parseKey(stored) == key, "didn't parse " + stored);
+    check(LoadOrder.parseKey("thepitt.esm:001234") == key, "plugin names aren't case blind");
+
+    LoadOrder withoutAnchorage = new LoadOrder(Arrays.asList("Fallout3.esm", "ThePitt.esm"));
+    check(withoutAnchorage.toFormId(key) == 0x0100_1234, "resolved in a shorter load order");
+    check(withoutAnchorage.toFormId(anchorageFirst.toKey(0x0100_1234)) == -1,
+        "resolved a form from a plugin that isn't loaded");
+    check(withoutAnchorage.toKey(0x0200_0001) == LoadOrder.NO_KEY,
+        "key for a mod index past the load order");
+
+    check(anchorageFirst.toKey(0xFF00_0ABC) == LoadOrder.NO_KEY, "key for a created form");
+    check(anchorageFirst.toFormId(LoadOrder.NO_KEY) == -1, "resolved NO_KEY");
+
+    for (String bad : new String[] { "", "Fallout3.esm", "Fallout3.esm:", ":000001",
+        "Fallout3.esm:zz", "Fallout3.esm:1000000" }) {
+      try {
+        LoadOrder.parseKey(bad);
+        throw new AssertionError("parsed \"" + bad + "\"");
+      } catch (IllegalArgumentException expected) {
+        // Not a plugin name and an object id.
+      }
+    }
+
+    System.out.println("LoadOrderTest passed");
+  }
+}
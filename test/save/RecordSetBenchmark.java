@@ -0,0 +1,75 @@
+package save;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import save.TestSaves.TestSave;
+
+/**
+ * Times a form type and change flag query, with its cardinality, against a
+ * full walk of the records. The save has the player's 2 records and 60,000
+ * fillers of 20 form types with varied change flags.
+ */
+public class RecordSetBenchmark {
+
+  private static final int FILLER_RECORDS = 60_000;
+  private static final int FORM_TYPE = 7;
+  private static final int FLAGS = FormChangeRecord.FLAG_INVENTORY;
+
+  private static final int RUNS = 10;
+  private static final int QUERIES_PER_RUN = 10_000;
+
+  public static void main(String[] args) throws Exception {
+    TestSave save = TestSaves.write(FILLER_RECORDS);
+    ByteBuffer bytes = ByteBuffer.wrap(save.bytes).order(ByteOrder.LITTLE_ENDIAN);
+    SaveFile saveFile = SaveFile.load(new Fo3ByteBuffer(new File("benchmark.fos"), bytes));
+    FormChangeRecordTable table = saveFile.getFormChangeRecordTable();
+
+    int expected = scan(table);
+    if (query(table) != expected) {
+      throw new AssertionError("Query found " + query(table) + " records, the scan " + expected);
+    }
+    System.out.printf("%d records, %d match%n", table.size(), expected);
+
+    // The first runs are warm-up.
+    double bestQuery = Double.MAX_VALUE;
+    double bestScan = Double.MAX_VALUE;
+    int sink = 0;
+    for (int run = 0; run < RUNS; run++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < QUERIES_PER_RUN; i++) {
+        sink += query(table);
+      }
+      bestQuery = Math.min(bestQuery, (System.nanoTime() - start) / (double) QUERIES_PER_RUN);
+
+      start = System.nanoTime();
+      for (int i = 0; i < QUERIES_PER_RUN / 100; i++) {
+        sink += scan(table);
+      }
+      bestScan = Math.min(bestScan, (System.nanoTime() - start) / (QUERIES_PER_RUN / 100.0));
+    }
+
+    System.out.printf("RecordSet query: %8.2f us%n", bestQuery / 1000);
+    System.out.printf("Walk of slots:   %8.2f us%n", bestScan / 1000);
+    if (sink == 42) {
+      System.out.println();
+    }
+  }
+
+  private static int query(FormChangeRecordTable table) {
+    return table.ofFormType(FORM_TYPE).and(table.withChangeFlags(FLAGS)).cardinality();
+  }
+
+  /** The same query by looking at every record's columns. */
+  private static int scan(FormChangeRecordTable table) {
+    int count = 0;
+    for (int slot = 0; slot < table.size(); slot++) {
+      if (table.getFormType(slot) == FORM_TYPE
+          && (table.getChangeFlags(slot) & FLAGS) == FLAGS) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
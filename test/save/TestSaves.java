@@ -0,0 +1,410 @@
+package save;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import save.SaveFile.LoadException;
+
+/**
+ * Writes small synthetic saves for the tests, laid out the way the loader
+ * reads them: a header and screenshot, three plugins, the file location
+ * table, the misc stats, the player's NPC and ACHR records, filler records
+ * and the form id table.
+ *
+ * The player has 250 caps, a weapon with a mod, a stack of armor with extra
+ * data and one more item, and the actor values in {@link #ACTOR_VALUES}.
+ *
+ * The tests check their results with {@link #check(boolean, String)}, so
+ * they don't need -ea.
+ */
+public class TestSaves {
+
+  public static final int SCREENSHOT_WIDTH = 64;
+  public static final int SCREENSHOT_HEIGHT = 48;
+
+  /** The player's NPC and ACHR records come before the fillers. */
+  public static final int PLAYER_RECORDS = 2;
+
+  /** The player's base strength, in the NPC record. */
+  public static final int BASE_STRENGTH = 5;
+
+  /** Raw index -> the player's actor value, see {@link ActorValues}. */
+  public static final Map<Integer, Float> ACTOR_VALUES;
+
+  static {
+    Map<Integer, Float> actorValues = new HashMap<>();
+    // Temporary
+    actorValues.put(ActorValue.STRENGTH.ordinal(), 2f);
+    actorValues.put(ActorValue.SMALL_GUNS.ordinal(), 5f);
+    actorValues.put(ActorValue.FIRE_RESIST.ordinal(), 10f);
+    // Permanent
+    actorValues.put(ActorValue.COUNT + ActorValue.STRENGTH.ordinal(), 1f);
+    actorValues.put(ActorValue.COUNT + ActorValue.CARRY_WEIGHT.ordinal(), 50f);
+    actorValues.put(ActorValue.COUNT + ActorValue.SMALL_GUNS.ordinal(), 3f);
+    // Experience
+    actorValues.put(98, 1234f);
+    ACTOR_VALUES = Collections.unmodifiableMap(actorValues);
+  }
+
+  /** A written save. */
+  public static class TestSave {
+
+    public final byte[] bytes;
+    /** Where the file location table starts. */
+    public final int fileLocationsPosition;
+    public final int recordCount;
+
+    TestSave(byte[] bytes, int fileLocationsPosition, int recordCount) {
+      this.bytes = bytes;
+      this.fileLocationsPosition = fileLocationsPosition;
+      this.recordCount = recordCount;
+    }
+
+    /**
+     * The save as the game has it before filling in the file location
+     * table, which it does last.
+     */
+    public byte[] withEmptyFileLocations() {
+      byte[] copy = bytes.clone();
+      for (int i = 0; i < 8 * 4; i++) {
+        copy[fileLocationsPosition + i] = 0;
+      }
+      return copy;
+    }
+
+    /** Loads the save from memory. */
+    public SaveFile load() throws LoadException {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+      return SaveFile.load(new Fo3ByteBuffer(new File("test.fos"), buffer));
+    }
+  }
+
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+  private TestSaves() {
+  }
+
+  /**
+   * A save with the player's records and the given number of filler records
+   * after them.
+   */
+  public static TestSave write(int fillerRecords) {
+    return new TestSaves().writeSave(fillerRecords);
+  }
+
+  /**
+   * Throws an AssertionError with the message unless the condition holds.
+   */
+  public static void check(boolean condition, String message) {
+    if (!condition) {
+      throw new AssertionError(message);
+    }
+  }
+
+  private TestSave writeSave(int fillerRecords) {
+    bytes("FO3SAVEGAME".getBytes(StandardCharsets.US_ASCII));
+    byte[] header = writeHeader();
+    int32(header.length);
+    bytes(header);
+    for (int i = 0; i < SCREENSHOT_WIDTH * SCREENSHOT_HEIGHT; i++) {
+      byte8(i % 256);
+      byte8((i / SCREENSHOT_WIDTH) * 5);
+      byte8(200);
+    }
+
+    // Form version, plugin info size, then the plugins.
+    byte8(0x15);
+    int32(0);
+    byte8(3);
+    pipe();
+    bstring("Fallout3.esm");
+    bstring("Anchorage.esm");
+    bstring("ThePitt.esm");
+
+    int fileLocationsPosition = out.size();
+    for (int i = 0; i < 8; i++) {
+      int32(0);
+    }
+    for (int i = 0; i < 0x4E; i++) {
+      byte8(0);
+    }
+
+    int globals1 = out.size();
+    int32(0);
+    int32(0x87);
+    int32(26);
+    pipe();
+    for (int i = 0; i < 26; i++) {
+      int32(i * 3);
+      pipe();
+    }
+
+    // Form id index 1 is the player's NPC, 2 the player, then items and
+    // fillers.
+    List<Integer> formIds = new ArrayList<>();
+    formIds.add(0x7);
+    formIds.add(0x14);
+    for (int item : new int[] { 0xF, 0x15163, 0x15164, 0x1000ABC, 0x4 }) {
+      formIds.add(item);
+    }
+
+    int records = out.size();
+    record(1, (1 << 1) | (1 << 2) | (1 << 4), 2, writeNpc());
+    record(2, 1 << 5, 1, writePlayer());
+    for (int r = 0; r < fillerRecords; r++) {
+      formIds.add(0x100000 + r);
+      byte[] data = new byte[(r % 7) * 9 + 3];
+      for (int i = 0; i < data.length; i++) {
+        data[i] = (byte) (i % 5 == 4 ? '|' : r);
+      }
+      record(formIds.size(), (r % 3 == 0 ? 1 << 5 : 0) | (1 << (r % 8)), 4 + r % 20, data);
+    }
+
+    int globals2 = out.size();
+    int32(0);
+    int formIdTable = out.size();
+    int32(formIds.size());
+    for (int formId : formIds) {
+      int32(formId);
+    }
+
+    byte[] bytes = out.toByteArray();
+    ByteBuffer table = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    table.position(fileLocationsPosition);
+    table.putInt(formIdTable);
+    table.putInt(0);
+    table.putInt(globals1);
+    table.putInt(records);
+    table.putInt(globals2);
+    table.putInt(0xC);
+    table.putInt(1);
+    table.putInt(PLAYER_RECORDS + fillerRecords);
+    return new TestSave(bytes, fileLocationsPosition, PLAYER_RECORDS + fillerRecords);
+  }
+
+  private byte[] writeHeader() {
+    return nested(() -> {
+      int32(0x30);
+      pipe();
+      int32(SCREENSHOT_WIDTH);
+      pipe();
+      int32(SCREENSHOT_HEIGHT);
+      pipe();
+      int32(7);
+      pipe();
+      bstring("Lone Wanderer");
+      bstring("Good");
+      int32(12);
+      pipe();
+      bstring("Megaton");
+      bstring("012.34.56");
+    });
+  }
+
+  private byte[] writeNpc() {
+    return nested(() -> {
+      for (int i = 0; i < 24; i++) {
+        byte8(i);
+      }
+      pipe();
+      vsval(2);
+      formIdIndex(3);
+      formIdIndex(4);
+      byte8(0);
+      pipe();
+      // SPECIAL
+      for (int value : new int[] { BASE_STRENGTH, 6, 7, 4, 8, 9, 3 }) {
+        byte8(value);
+      }
+      pipe();
+    });
+  }
+
+  private byte[] writePlayer() {
+    return nested(() -> {
+      for (int i = 0; i < 28; i++) {
+        byte8(0);
+      }
+      for (int i = 0; i < 220; i++) {
+        float value = ACTOR_VALUES.getOrDefault(i, 0f);
+        int32(Float.floatToIntBits(value));
+        pipe();
+      }
+      byte8(0);
+      pipe();
+      int32(Float.floatToIntBits(1));
+      pipe();
+      vsval(2);
+      byte8(0x60);
+      pipe();
+      int32(99);
+      pipe();
+      byte8(0x74);
+      pipe();
+      formIdIndex(5);
+
+      // Inventory
+      vsval(4);
+
+      // Caps
+      formIdIndex(3);
+      int32(250);
+      pipe();
+      vsval(0);
+
+      // A weapon with a mod.
+      formIdIndex(4);
+      int32(3);
+      pipe();
+      vsval(1);
+      vsval(2);
+      byte8(0x16);
+      pipe();
+      byte8(0x4A);
+      pipe();
+      byte8(2);
+      pipe();
+
+      // Armor with a health, a count, an owner, a condition and a script.
+      formIdIndex(5);
+      int32(2);
+      pipe();
+      vsval(2);
+      vsval(2);
+      byte8(0x25);
+      pipe();
+      int32(Float.floatToIntBits(50));
+      pipe();
+      byte8(0x24);
+      pipe();
+      int16(1);
+      pipe();
+      vsval(5);
+      byte8(0x21);
+      pipe();
+      formIdIndex(2);
+      byte8(0x1C);
+      pipe();
+      formIdIndex(6);
+      byte8(0x30);
+      pipe();
+      int32(Float.floatToIntBits(0.5f));
+      pipe();
+      byte8(0x3E);
+      pipe();
+      byte8(0x0D);
+      pipe();
+      formIdIndex(7);
+      vsval(2);
+      int32(1);
+      pipe();
+      int64(Double.doubleToLongBits(3.5));
+      pipe();
+      int32(0x80000002);
+      pipe();
+      formIdIndex(3);
+      byte8(0);
+      pipe();
+      byte8(0);
+      pipe();
+
+      formIdIndex(6);
+      int32(1);
+      pipe();
+      vsval(0);
+    });
+  }
+
+  private void record(int formIdIndex, int changeFlags, int formType, byte[] data) {
+    byte8(formIdIndex >> 16);
+    byte8(formIdIndex >> 8);
+    byte8(formIdIndex);
+    int32(changeFlags);
+    int sizeBits = data.length < 0x100 ? 0 : data.length < 0x10000 ? 1 : 2;
+    byte8((formType & 0x3F) | (sizeBits << 6));
+    // Version
+    byte8(15);
+    if (sizeBits == 0) {
+      byte8(data.length);
+    } else if (sizeBits == 1) {
+      int16(data.length);
+    } else {
+      int32(data.length);
+    }
+    bytes(data);
+  }
+
+  /** Writes what the writer writes to a separate array. */
+  private byte[] nested(Runnable writer) {
+    byte[] before = out.toByteArray();
+    out.reset();
+    writer.run();
+    byte[] nested = out.toByteArray();
+    out.reset();
+    bytes(before);
+    return nested;
+  }
+
+  private void pipe() {
+    out.write('|');
+  }
+
+  private void byte8(int value) {
+    out.write(value);
+  }
+
+  private void int16(int value) {
+    out.write(value);
+    out.write(value >> 8);
+  }
+
+  private void int32(int value) {
+    for (int i = 0; i < 4; i++) {
+      out.write(value >> (8 * i));
+    }
+  }
+
+  private void int64(long value) {
+    for (int i = 0; i < 8; i++) {
+      out.write((int) (value >> (8 * i)));
+    }
+  }
+
+  private void bytes(byte[] bytes) {
+    out.write(bytes, 0, bytes.length);
+  }
+
+  private void bstring(String s) {
+    byte[] bytes = s.getBytes(Fo3Strings.CHARSET);
+    int16(bytes.length);
+    pipe();
+    bytes(bytes);
+    pipe();
+  }
+
+  /** A form id index, big-endian, followed by a pipe. */
+  private void formIdIndex(int index) {
+    byte8(index >> 16);
+    byte8(index >> 8);
+    byte8(index);
+    pipe();
+  }
+
+  /** A variable size value, followed by a pipe. */
+  private void vsval(int value) {
+    if (value < 0x40) {
+      byte8(value << 2);
+    } else {
+      int16((value << 2) | 1);
+    }
+    pipe();
+  }
+}